@@ -0,0 +1,92 @@
+package core;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+// Fails the build when the JavaFX-free part of a GUI frame allocates once warmed up, where
+// GuiFrameBenchmark only reports it under -prof gc. Each frame publishes and takes a snapshot,
+// eases the vehicles, reads what drawVehicles and drawVehicleRoutes read per vehicle, and runs
+// the stats bar's change check; the simulation steps in between, outside the measurement.
+// Runs in the test phase; -DskipTests skips it.
+public final class AllocationCheck {
+    private static final int GRID_SIZE = 10;
+    private static final int VEHICLES = 1000;
+    private static final int WARMUP_FRAMES = 20_000;
+    private static final int FRAMES = 5_000;
+
+    private final CityMap cityMap = BenchmarkSupport.gridCity(GRID_SIZE, VEHICLES);
+    private final SimulationEngine engine = new SimulationEngine(cityMap);
+    private final RoadGeometry geometry = RoadGeometry.forGrid(cityMap, 60, 10);
+    private final SnapshotPublisher snapshots = new SnapshotPublisher(cityMap);
+    private final VehicleRenderState vehicleState = new VehicleRenderState();
+    private final CityFrame shownFigures = new CityFrame();
+    private double sink;
+
+    private AllocationCheck() {
+    }
+
+    public static void main(String[] args) {
+        BenchmarkSupport.silenceConsole();
+        EventLog.setLevel(EventLog.Level.OFF);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("AllocationCheck: per-thread allocation counting is not supported here");
+            System.exit(2);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        AllocationCheck check = new AllocationCheck();
+        check.run(threads, WARMUP_FRAMES);
+        long bytes = check.run(threads, FRAMES);
+        System.err.println("AllocationCheck: " + bytes + " bytes over " + FRAMES + " frames of "
+                + VEHICLES + " vehicles (" + check.sink + ")");
+        if (bytes > 0) {
+            System.err.println("AllocationCheck: the per-frame GUI path allocates again");
+            System.exit(1);
+        }
+    }
+
+    // Allocated bytes of the frames alone
+    private long run(ThreadMXBean threads, int frames) {
+        long total = 0;
+        for (int i = 0; i < frames; i++) {
+            engine.step();
+            long before = threads.getCurrentThreadAllocatedBytes();
+            frame();
+            total += threads.getCurrentThreadAllocatedBytes() - before;
+        }
+        return total;
+    }
+
+    private void frame() {
+        snapshots.publish();
+        CityFrame frame = snapshots.latest();
+        vehicleState.update(frame, geometry, 0.016, 1.0, 0, geometry.gridSize - 1, 0, geometry.gridSize - 1);
+
+        // drawVehicles
+        int count = Math.min(frame.vehicleCount, vehicleState.size());
+        for (int slot = 0; slot < count; slot++) {
+            int road = frame.vehicleRoad[slot];
+            if (vehicleState.visible[slot] && road >= 0) {
+                sink += (geometry.horizontal[road] ? vehicleState.x[slot] : vehicleState.y[slot])
+                        + frame.vehicleType[slot].ordinal() + frame.vehicleSpeed[slot];
+            }
+        }
+
+        // drawVehicleRoutes
+        for (int slot = 0; slot < vehicleState.size(); slot++) {
+            int points = vehicleState.getTrailSize(slot);
+            if (vehicleState.visible[slot] && points > 1) {
+                for (int i = 0; i < points; i++) {
+                    sink += vehicleState.getTrailX(slot, i) + vehicleState.getTrailY(slot, i);
+                }
+            }
+        }
+
+        // updateStats, up to the text it only builds when a figure changed
+        if (!shownFigures.hasSameFigures(frame)) {
+            shownFigures.copyFiguresFrom(frame);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package core;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// Helpers shared by the benchmarks
+final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    // The simulation reports every event on stdout; keep the PrintStream (and its lock) but drop the bytes
+    static void silenceConsole() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    static CityMap gridCity(int gridSize, int vehicleCount) {
+        CityMap cityMap = new CityMap();
+        cityMap.setupGridCity(gridSize, vehicleCount);
+        return cityMap;
+    }
+}
@@ -0,0 +1,34 @@
+package core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// CityMap.setupGridCity over grid sizes and vehicle counts
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CitySetupBenchmark {
+    @Param({"5", "10", "50"})
+    public int gridSize;
+
+    @Param({"10", "1000", "100000"})
+    public int vehicleCount;
+
+    @Benchmark
+    public CityMap setupGridCity() {
+        return BenchmarkSupport.gridCity(gridSize, vehicleCount);
+    }
+}
@@ -0,0 +1,50 @@
+package core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The stats-bar figures (active vehicles, average wait, congestion) read from the city's counters
+// against the full scan SimulationStats.collect still does; the first should not grow with the city
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DashboardStatsBenchmark {
+    @Param({"10", "50", "100"})
+    public int gridSize;
+
+    private CityMap cityMap;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.silenceConsole();
+        EventLog.setLevel(EventLog.Level.OFF);
+        cityMap = BenchmarkSupport.gridCity(gridSize, gridSize * gridSize * 4);
+        cityMap.getDiscreteEventSimulation().runFor(10_000); // vehicles on the roads and waiting
+    }
+
+    @Benchmark
+    public double counters() {
+        SimulationMetrics metrics = cityMap.getMetrics();
+        return metrics.getActiveVehicles() + metrics.getAverageWaitSeconds() + metrics.getCongestionPercent();
+    }
+
+    @Benchmark
+    public double scan() {
+        SimulationStats stats = SimulationStats.collect(cityMap, 10_000);
+        return stats.getActiveVehicles() + stats.getAverageWaitSeconds() + stats.getCongestionPercent();
+    }
+}
@@ -0,0 +1,56 @@
+package core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of one EventLog call on a simulation thread, disabled and with the writer draining to a null console
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventLogBenchmark {
+    @Param({"OFF", "DEBUG"})
+    public String level;
+
+    private final String vehicleId = "V1";
+    private final String roadId = "R0-0";
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkSupport.silenceConsole();
+        EventLog.setLevel(EventLog.Level.valueOf(level));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        EventLog.flush(5000);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void roadEntered1() {
+        EventLog.log(SimulationClock.SYSTEM, EventLog.Kind.ROAD_ENTERED, vehicleId, roadId);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void roadEnteredMax() {
+        EventLog.log(SimulationClock.SYSTEM, EventLog.Kind.ROAD_ENTERED, vehicleId, roadId);
+    }
+}
@@ -0,0 +1,52 @@
+package core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The JavaFX-free part of a GUI frame: capture a snapshot, take it as the reader and ease every
+// vehicle with its trail. Run with -prof gc; gc.alloc.rate.norm should stay at ~0 B/op once the
+// columns have grown, otherwise something on the per-frame path allocates again. AllocationCheck
+// enforces that in the build.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuiFrameBenchmark {
+    @Param({"100", "1000"})
+    public int vehicleCount;
+
+    private RoadGeometry geometry;
+    private SnapshotPublisher snapshots;
+    private VehicleRenderState vehicleState;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkSupport.silenceConsole();
+        CityMap cityMap = BenchmarkSupport.gridCity(10, vehicleCount);
+        geometry = RoadGeometry.forGrid(cityMap, 60, 10);
+        snapshots = new SnapshotPublisher(cityMap);
+        vehicleState = new VehicleRenderState();
+    }
+
+    @Benchmark
+    public VehicleRenderState frame() {
+        snapshots.publish();
+        CityFrame frame = snapshots.latest();
+        vehicleState.update(frame, geometry, 0.016, 1.0, 0, geometry.gridSize - 1, 0, geometry.gridSize - 1);
+        return vehicleState;
+    }
+}
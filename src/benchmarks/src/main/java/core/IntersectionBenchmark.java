@@ -0,0 +1,71 @@
+package core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Intersection.enter/exit round trips with 1..N vehicles contending for the same intersection, per admission mode
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntersectionBenchmark {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    @Param({"OLDEST_FIRST", "FIFO"})
+    public String admissionMode;
+
+    private Intersection intersection;
+
+    @State(Scope.Thread)
+    public static class Driver {
+        final String vehicleId = "V" + NEXT_ID.getAndIncrement();
+    }
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.silenceConsole();
+        intersection = new Intersection(0, "X0-0", SimulationClock.SYSTEM,
+                Intersection.AdmissionMode.valueOf(admissionMode));
+    }
+
+    private boolean enterExit(Driver driver) {
+        boolean entered = intersection.enter(driver.vehicleId);
+        if (entered) {
+            intersection.exit(driver.vehicleId);
+        }
+        return entered;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean enterExit1(Driver driver) {
+        return enterExit(driver);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean enterExit4(Driver driver) {
+        return enterExit(driver);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean enterExitMax(Driver driver) {
+        return enterExit(driver);
+    }
+}
@@ -0,0 +1,55 @@
+package core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of recording a latency into the shared histogram, alone and with every core recording at
+// once as in the threaded and parallel modes, against a snapshot for the reporting side
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private LatencyHistogram histogram;
+
+    @Setup
+    public void setup() {
+        histogram = new LatencyHistogram();
+    }
+
+    private void record() {
+        histogram.record(ThreadLocalRandom.current().nextInt(5000));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void record1() {
+        record();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void recordMax() {
+        record();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public LatencyHistogram.Snapshot snapshot() {
+        return histogram.snapshot();
+    }
+}
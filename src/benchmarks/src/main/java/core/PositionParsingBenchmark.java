@@ -0,0 +1,79 @@
+package core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Per-frame cost of placing every vehicle: the road id parsing TrafficSimulationGUI used to do,
+// against the RoadGeometry table lookups it does now
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionParsingBenchmark {
+    private static final int CELL_SIZE = 60; // as in TrafficSimulationGUI
+
+    @Param({"30", "1000", "10000"})
+    public int vehicleCount;
+
+    private VehicleStore store;
+    private RoadGeometry geometry;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.silenceConsole();
+        CityMap cityMap = BenchmarkSupport.gridCity(10, vehicleCount);
+        store = cityMap.getVehicleStore();
+        geometry = RoadGeometry.forGrid(cityMap, CELL_SIZE, 10);
+    }
+
+    @Benchmark
+    public void parseRoadIds(Blackhole blackhole) {
+        for (int slot = 0; slot < store.size(); slot++) {
+            Road currentRoad = store.getRoad(slot);
+            if (currentRoad != null) {
+                double progress = store.getProgress(slot);
+                String roadId = currentRoad.getId();
+                boolean isHorizontal = roadId.startsWith("R");
+                int row = Integer.parseInt(roadId.split("-")[0].substring(1));
+                int col = Integer.parseInt(roadId.split("-")[1]);
+
+                double targetX, targetY;
+                if (isHorizontal) {
+                    targetX = col * CELL_SIZE * 2 + progress * CELL_SIZE * 2;
+                    targetY = row * CELL_SIZE * 2 + CELL_SIZE;
+                } else {
+                    targetX = col * CELL_SIZE * 2 + CELL_SIZE;
+                    targetY = row * CELL_SIZE * 2 + progress * CELL_SIZE * 2;
+                }
+                blackhole.consume(targetX);
+                blackhole.consume(targetY);
+            }
+        }
+    }
+
+    @Benchmark
+    public void geometryLookup(Blackhole blackhole) {
+        for (int slot = 0; slot < store.size(); slot++) {
+            int road = store.getRoadIndex(slot);
+            if (road >= 0) {
+                double progress = store.getProgress(slot);
+                blackhole.consume(geometry.pointX(road, progress));
+                blackhole.consume(geometry.pointY(road, progress));
+            }
+        }
+    }
+}
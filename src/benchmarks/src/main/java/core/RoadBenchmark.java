@@ -0,0 +1,81 @@
+package core;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Road.addVehicle/removeVehicle with 1..N threads on one road; capacity 2 is what setupGridCity
+// builds, so most contended attempts take the "road is full" path
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoadBenchmark {
+    private static final AtomicInteger NEXT_VEHICLE = new AtomicInteger();
+
+    @Param({"2", "1000"})
+    public int capacity;
+
+    private Road road;
+    private List<Vehicle> vehicles;
+
+    @State(Scope.Thread)
+    public static class Driver {
+        int index = NEXT_VEHICLE.getAndIncrement();
+    }
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.silenceConsole();
+        road = new Road(0, "R0-0", capacity, CityMap.Direction.EAST);
+        vehicles = BenchmarkSupport.gridCity(4, 256).getVehicles();
+    }
+
+    private boolean addRemove(Driver driver) {
+        Vehicle vehicle = vehicles.get(driver.index % vehicles.size());
+        boolean added = road.addVehicle(vehicle);
+        if (added) {
+            road.removeVehicle(vehicle);
+        }
+        return added;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean addRemove1(Driver driver) {
+        return addRemove(driver);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean addRemove4(Driver driver) {
+        return addRemove(driver);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean addRemoveMax(Driver driver) {
+        return addRemove(driver);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int vehicleCountMax() {
+        return road.getVehicleCount();
+    }
+}
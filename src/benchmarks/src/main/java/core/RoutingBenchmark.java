@@ -0,0 +1,64 @@
+package core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// RoutingEngine point-to-point queries on grids up to two million roads, with and without the
+// route cache. Destinations are drawn from the cells a start can reach (east and south).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class RoutingBenchmark {
+    private static final int PAIRS = 1024; // power of two
+
+    @Param({"50", "200", "1000"})
+    public int gridSize;
+
+    private RoutingEngine uncached;
+    private RoutingEngine cached;
+    private final int[] origins = new int[PAIRS];
+    private final int[] destinations = new int[PAIRS];
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        uncached = RoutingEngine.grid(gridSize, RoutingEngine.DEFAULT_LANDMARKS, 0);
+        cached = RoutingEngine.grid(gridSize, RoutingEngine.DEFAULT_LANDMARKS, PAIRS);
+        Random random = new Random(42);
+        for (int i = 0; i < PAIRS; i++) {
+            int x = random.nextInt(gridSize - 1);
+            int y = random.nextInt(gridSize - 1);
+            origins[i] = x * gridSize + y;
+            destinations[i] = (x + 1 + random.nextInt(gridSize - x - 1)) * gridSize
+                    + y + 1 + random.nextInt(gridSize - y - 1);
+            cached.findRoute(origins[i], destinations[i]);
+        }
+    }
+
+    @Benchmark
+    public RoutingEngine.Route query() {
+        int i = next++ & (PAIRS - 1);
+        return uncached.findRoute(origins[i], destinations[i]);
+    }
+
+    @Benchmark
+    public RoutingEngine.Route cachedQuery() {
+        int i = next++ & (PAIRS - 1);
+        return cached.findRoute(origins[i], destinations[i]);
+    }
+}
@@ -0,0 +1,66 @@
+package core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One fixed simulation step of a busy grid, sequential vs tiled on a ForkJoinPool. The city is
+// rebuilt every iteration so vehicles are still on the road while it is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepBenchmark {
+    @Param({"FIXED_STEP", "PARALLEL_STEP"})
+    public String engine;
+
+    @Param({"20", "50"})
+    public int gridSize;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private SimulationEngine simulationEngine;
+
+    @Setup(Level.Trial)
+    public void silence() {
+        BenchmarkSupport.silenceConsole();
+        EventLog.setLevel(EventLog.Level.OFF);
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        CityMap cityMap = BenchmarkSupport.gridCity(gridSize, gridSize * gridSize * 4);
+        simulationEngine = engine.equals("PARALLEL_STEP")
+                ? new ParallelSimulationEngine(cityMap, SimulationEngine.DEFAULT_STEP_MILLIS,
+                        ParallelSimulationEngine.DEFAULT_TILE_SIZE, threads)
+                : new SimulationEngine(cityMap);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        simulationEngine.stop();
+        if (simulationEngine instanceof ParallelSimulationEngine parallelEngine) {
+            parallelEngine.close();
+        }
+    }
+
+    @Benchmark
+    public void step() {
+        simulationEngine.step();
+    }
+}
@@ -0,0 +1,75 @@
+package core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// TrafficLight.getTrafficLightState as polled by waiting vehicles, alone and while the light switches
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrafficLightBenchmark {
+    private TrafficLight light;
+    private long now = 0; // only touched by the single switchPhase thread
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.silenceConsole();
+        light = new TrafficLight(new Road(0, "R0-0", 2, CityMap.Direction.EAST), SimulationClock.SYSTEM);
+    }
+
+    @TearDown
+    public void tearDown() {
+        light.stopStepping();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TrafficLight.State readState1() {
+        return light.getTrafficLightState();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public TrafficLight.State readState4() {
+        return light.getTrafficLightState();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public TrafficLight.State readStateMax() {
+        return light.getTrafficLightState();
+    }
+
+    @Benchmark
+    @Group("switching")
+    @GroupThreads(3)
+    public TrafficLight.State readWhileSwitching() {
+        return light.getTrafficLightState();
+    }
+
+    @Benchmark
+    @Group("switching")
+    @GroupThreads(1)
+    public long switchPhase() {
+        // Jump far enough ahead that every call ends a phase
+        now += 10_000;
+        return light.step(now);
+    }
+}
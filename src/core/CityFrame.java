@@ -0,0 +1,173 @@
+import java.util.Arrays;
+import java.util.List;
+
+// Everything the GUI draws, copied out of a CityMap at one moment. Filled by SnapshotPublisher on
+// its own thread, or rebuilt from a journal by JournalPlayer, and never changed while a reader
+// holds it, so drawing needs no locks and sees no half-updated vehicles.
+public class CityFrame {
+    private static final Vehicle.VehicleType[] TYPES = Vehicle.VehicleType.values();
+
+    long time; // simulation clock at capture
+    int vehicleCount;
+    int roadCount;
+
+    // Per vehicle, indexed by VehicleStore slot
+    Vehicle.VehicleType[] vehicleType = new Vehicle.VehicleType[0];
+    int[] vehicleRoad = new int[0]; // -1 before the vehicle has a road
+    double[] vehicleProgress = new double[0];
+    double[] vehicleSpeed = new double[0];
+    int[] vehicleIntersection = new int[0]; // -1 when not crossing one
+
+    // Per road, and per light (lights share their road's index)
+    int[] roadVehicles = new int[0];
+    int[] roadCapacity = new int[0];
+    TrafficLight.State[] lightState = new TrafficLight.State[0];
+    double[] lightBrightness = new double[0];
+    boolean[] lightEmergency = new boolean[0];
+
+    // City-wide figures shown in the stats bar
+    int totalVehicles;
+    int activeVehicles;
+    int[] activeByType = new int[TYPES.length];
+    double averageWaitSeconds;
+    int congestionPercent;
+
+    void capture(CityMap cityMap) {
+        VehicleStore store = cityMap.getVehicleStore();
+        List<Road> roads = cityMap.getRoads();
+        List<TrafficLight> lights = cityMap.getLights();
+        time = cityMap.getClock().currentTimeMillis();
+
+        int vehicles = store.size();
+        ensureVehicleCapacity(vehicles);
+        if (roadVehicles.length != roads.size()) {
+            setRoadCount(roads.size());
+            for (int road = 0; road < roads.size(); road++) {
+                roadCapacity[road] = roads.get(road).getCapacity();
+            }
+        }
+        vehicleCount = vehicles;
+
+        for (int slot = 0; slot < vehicles; slot++) {
+            vehicleType[slot] = TYPES[store.getTypeOrdinal(slot)];
+            vehicleRoad[slot] = store.getRoadIndex(slot);
+            vehicleProgress[slot] = store.getProgress(slot);
+            vehicleSpeed[slot] = store.getSpeed(slot);
+            vehicleIntersection[slot] = store.getIntersectionIndex(slot);
+        }
+        for (int road = 0; road < roadCount; road++) {
+            roadVehicles[road] = roads.get(road).getVehicleCount();
+        }
+
+        // City-wide figures are kept up to date as vehicles move; no scan needed
+        SimulationMetrics metrics = cityMap.getMetrics();
+        totalVehicles = vehicles;
+        activeVehicles = metrics.getActiveVehicles();
+        for (int type = 0; type < TYPES.length; type++) {
+            activeByType[type] = metrics.getActiveVehicles(TYPES[type]);
+        }
+        averageWaitSeconds = metrics.getAverageWaitSeconds();
+        congestionPercent = metrics.getCongestionPercent();
+
+        for (int light = 0; light < lights.size(); light++) {
+            TrafficLight trafficLight = lights.get(light);
+            lightState[light] = trafficLight.getTrafficLightState();
+            lightBrightness[light] = trafficLight.getBrightness();
+            lightEmergency[light] = trafficLight.isEmergencyMode();
+        }
+    }
+
+    void ensureVehicleCapacity(int vehicles) {
+        if (vehicleRoad.length < vehicles) {
+            int capacity = Math.max(vehicles, vehicleRoad.length * 2);
+            vehicleType = Arrays.copyOf(vehicleType, capacity);
+            vehicleRoad = Arrays.copyOf(vehicleRoad, capacity);
+            vehicleProgress = Arrays.copyOf(vehicleProgress, capacity);
+            vehicleSpeed = Arrays.copyOf(vehicleSpeed, capacity);
+            vehicleIntersection = Arrays.copyOf(vehicleIntersection, capacity);
+        }
+    }
+
+    // Fresh per-road columns; capacities are left for the caller to fill in
+    void setRoadCount(int roads) {
+        roadCount = roads;
+        roadVehicles = new int[roads];
+        roadCapacity = new int[roads];
+        lightState = new TrafficLight.State[roads];
+        lightBrightness = new double[roads];
+        lightEmergency = new boolean[roads];
+    }
+
+    // Makes this frame an independent copy of another
+    void copyFrom(CityFrame other) {
+        ensureVehicleCapacity(other.vehicleCount);
+        vehicleCount = other.vehicleCount;
+        System.arraycopy(other.vehicleType, 0, vehicleType, 0, vehicleCount);
+        System.arraycopy(other.vehicleRoad, 0, vehicleRoad, 0, vehicleCount);
+        System.arraycopy(other.vehicleProgress, 0, vehicleProgress, 0, vehicleCount);
+        System.arraycopy(other.vehicleSpeed, 0, vehicleSpeed, 0, vehicleCount);
+        System.arraycopy(other.vehicleIntersection, 0, vehicleIntersection, 0, vehicleCount);
+        if (roadCount != other.roadCount) {
+            setRoadCount(other.roadCount);
+        }
+        System.arraycopy(other.roadVehicles, 0, roadVehicles, 0, roadCount);
+        System.arraycopy(other.roadCapacity, 0, roadCapacity, 0, roadCount);
+        System.arraycopy(other.lightState, 0, lightState, 0, roadCount);
+        System.arraycopy(other.lightBrightness, 0, lightBrightness, 0, roadCount);
+        System.arraycopy(other.lightEmergency, 0, lightEmergency, 0, roadCount);
+        copyFiguresFrom(other);
+    }
+
+    // Only the city-wide figures and the time, for holders that must keep them after the source
+    // frame is reused; the per-vehicle and per-road parts are left alone
+    void copyFiguresFrom(CityFrame other) {
+        time = other.time;
+        totalVehicles = other.totalVehicles;
+        activeVehicles = other.activeVehicles;
+        System.arraycopy(other.activeByType, 0, activeByType, 0, activeByType.length);
+        averageWaitSeconds = other.averageWaitSeconds;
+        congestionPercent = other.congestionPercent;
+    }
+
+    // Whether the city-wide figures match, ignoring the time
+    boolean hasSameFigures(CityFrame other) {
+        return totalVehicles == other.totalVehicles
+            && activeVehicles == other.activeVehicles
+            && Arrays.equals(activeByType, other.activeByType)
+            && averageWaitSeconds == other.averageWaitSeconds
+            && congestionPercent == other.congestionPercent;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public int getVehicleCount() {
+        return vehicleCount;
+    }
+
+    public int getRoadCount() {
+        return roadCount;
+    }
+
+    // Vehicles in the city, finished or not
+    public int getTotalVehicles() {
+        return totalVehicles;
+    }
+
+    public int getActiveVehicles() {
+        return activeVehicles;
+    }
+
+    public int getActiveVehicles(Vehicle.VehicleType type) {
+        return activeByType[type.ordinal()];
+    }
+
+    public double getAverageWaitSeconds() {
+        return averageWaitSeconds;
+    }
+
+    public int getCongestionPercent() {
+        return congestionPercent;
+    }
+}
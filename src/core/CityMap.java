@@ -1,19 +1,71 @@
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class CityMap {
     private final List<Road> roads = new ArrayList<>();
     private final List<Intersection> intersections = new ArrayList<>();
     private final List<TrafficLight> lights = new ArrayList<>();
     private final List<Vehicle> vehicles = new ArrayList<>();
+    private VehicleStore vehicleStore;
+    // Cap on green lights in PER_LIGHT mode; a new one with every grid, so no slot outlives its lights
+    private GreenSlots greenSlots = new GreenSlots();
     private final Map<String, Road> roadMap = new HashMap<>();
     private final Map<String, Intersection> intersectionMap = new HashMap<>();
     private final Map<Road, TrafficLight> roadLightMap = new HashMap<>();
+    private ExecutionMode executionMode = ExecutionMode.THREADS;
+    private Intersection.AdmissionMode admissionMode = Intersection.AdmissionMode.OLDEST_FIRST;
+    private SignalMode signalMode = SignalMode.CONTROLLER;
+    private RouteMode routeMode = RouteMode.RANDOM_STEPS;
+    private RoutingEngine routingEngine;
+    private SignalController signalController;
+    private final List<List<TrafficLight>> signalGroups = new ArrayList<>();
+    private int gridSize;
+    private ParallelSimulationEngine parallelEngine;
+    private SimulationEngine engine;
+    private DiscreteEventSimulation discreteEventSimulation;
+    private VirtualThreadRunner virtualThreadRunner;
+    // Stepped modes run on simulated time, the thread mode on the wall clock
+    private final VirtualClock virtualClock = new VirtualClock();
+    private final SimulationClock clock = () -> isThreaded()
+            ? System.currentTimeMillis() : virtualClock.currentTimeMillis();
+    private final SimulationMetrics metrics = new SimulationMetrics(roads, intersections, clock);
+    // Every light and vehicle draws from its own stream derived from this; random unless set
+    private long seed = ThreadLocalRandom.current().nextLong();
+
+    // Kinds of random streams derived from the seed
+    private static final int LIGHT_STREAM = 1;
+    private static final int VEHICLE_STREAM = 2;
+    private static final int ROUTE_STREAM = 3;
 
     public enum Direction {
         NORTH, SOUTH, EAST, WEST
     }
 
+    public enum ExecutionMode {
+        THREADS,         // one platform thread per vehicle and traffic light
+        VIRTUAL_THREADS, // same blocking logic on virtual threads
+        FIXED_STEP,      // single SimulationEngine loop
+        PARALLEL_STEP,   // ParallelSimulationEngine, grid tiles stepped on a ForkJoinPool
+        DISCRETE_EVENT   // DiscreteEventSimulation event queue
+    }
+
+    public enum SignalMode {
+        PER_LIGHT,  // each light runs its own cycle, at most 2 green lights city-wide
+        CONTROLLER  // one SignalController alternates the approaches of every intersection
+    }
+
+    public enum RouteMode {
+        RANDOM_STEPS, // three random east/south steps from the start
+        SHORTEST_PATH // RoutingEngine path from the start to a random reachable destination
+    }
+
     public void setupGridCity(int gridSize, int vehicleCount) {
+        setupGrid(gridSize);
+        addRandomVehicles(0, vehicleCount, 0, gridSize);
+    }
+
+    // Roads, lights and intersections only, without vehicles
+    public void setupGrid(int gridSize) {
         roads.clear();
         intersections.clear();
         lights.clear();
@@ -21,33 +73,49 @@ public class CityMap {
         roadMap.clear();
         intersectionMap.clear();
         roadLightMap.clear();
+        vehicleStore = new VehicleStore(roads, lights, intersections, clock, metrics);
+        greenSlots = new GreenSlots();
+        metrics.reset();
+        routingEngine = null;
+        this.gridSize = gridSize;
 
         for (int i = 0; i < gridSize; i++) {
             for (int j = 0; j < gridSize; j++) {
-                Road hRoad = new Road("R" + i + "-" + j, 2, Direction.EAST);
-                TrafficLight hLight = new TrafficLight(hRoad);
+                Road hRoad = new Road(roads.size(), "R" + i + "-" + j, 2, Direction.EAST, metrics);
+                TrafficLight hLight = new TrafficLight(hRoad, clock, randomStream(seed, LIGHT_STREAM, hRoad.getIndex()),
+                        greenSlots);
                 roads.add(hRoad);
                 lights.add(hLight);
                 roadMap.put(hRoad.getId(), hRoad);
                 roadLightMap.put(hRoad, hLight);
 
-                Road vRoad = new Road("C" + i + "-" + j, 2, Direction.SOUTH);
-                TrafficLight vLight = new TrafficLight(vRoad);
+                Road vRoad = new Road(roads.size(), "C" + i + "-" + j, 2, Direction.SOUTH, metrics);
+                TrafficLight vLight = new TrafficLight(vRoad, clock, randomStream(seed, LIGHT_STREAM, vRoad.getIndex()),
+                        greenSlots);
                 roads.add(vRoad);
                 lights.add(vLight);
                 roadMap.put(vRoad.getId(), vRoad);
                 roadLightMap.put(vRoad, vLight);
 
-                Intersection intersection = new Intersection("X" + i + "-" + j);
+                Intersection intersection = new Intersection(intersections.size(), "X" + i + "-" + j, clock,
+                        admissionMode);
                 intersections.add(intersection);
                 intersectionMap.put(intersection.getId(), intersection);
             }
         }
+        setupSignalController(gridSize);
+    }
 
-        Random rand = new Random();
+    // Adds vehicles V<firstId>.. with random 3-step routes starting in rows [minRow, maxRow)
+    public void addRandomVehicles(int firstId, int vehicleCount, int minRow, int maxRow) {
+        SplittableRandom rand = randomStream(seed, ROUTE_STREAM, firstId);
+        if (routeMode == RouteMode.SHORTEST_PATH) {
+            addRoutedVehicles(rand, firstId, vehicleCount, minRow, maxRow);
+            return;
+        }
 
-        for (int i = 0; i < vehicleCount; i++) {
-            int startX = rand.nextInt(gridSize);
+        for (int i = firstId; i < firstId + vehicleCount; i++) {
+            int startX = minRow + rand.nextInt(maxRow - minRow);
             int startY = rand.nextInt(gridSize);
             List<Road> route = new ArrayList<>();
             List<TrafficLight> routeLights = new ArrayList<>();
@@ -70,13 +138,9 @@ public class CityMap {
                 }
 
                 Road road = roadMap.get(roadId);
-                if (road != null) route.add(road);
-
-                for (TrafficLight light : lights) {
-                    if (light.getLightId().equals(roadId)) {
-                        routeLights.add(light);
-                        break;
-                    }
+                if (road != null) {
+                    route.add(road);
+                    routeLights.add(roadLightMap.get(road));
                 }
 
                 String intersectionId = "X" + x + "-" + y;
@@ -87,20 +151,268 @@ public class CityMap {
             }
 
             if (!route.isEmpty()) {
-                Vehicle v = new Vehicle("V" + i, route, routeLights, routeIntersections);
+                Vehicle v = new Vehicle("V" + i, vehicleStore, route, routeLights, routeIntersections, clock,
+                        randomStream(seed, VEHICLE_STREAM, i));
                 vehicles.add(v);
             }
         }
     }
 
+    // Roads only lead east and south, so the destination is drawn from the cells below and right of
+    // the start; the bottom-right cell reaches nothing and is never a start
+    private void addRoutedVehicles(SplittableRandom rand, int firstId, int vehicleCount, int minRow, int maxRow) {
+        RoutingEngine routing = getRoutingEngine();
+        for (int i = firstId; i < firstId + vehicleCount; i++) {
+            int startX;
+            int startY;
+            do {
+                startX = minRow + rand.nextInt(maxRow - minRow);
+                startY = rand.nextInt(gridSize);
+            } while (startX == gridSize - 1 && startY == gridSize - 1);
+
+            int endX;
+            int endY;
+            do {
+                endX = startX + rand.nextInt(gridSize - startX);
+                endY = startY + rand.nextInt(gridSize - startY);
+            } while (endX == startX && endY == startY);
+
+            RoutingEngine.Route route = routing.findRoute(startX * gridSize + startY, endX * gridSize + endY);
+            if (route != null) {
+                vehicles.add(new Vehicle("V" + i, vehicleStore, route, clock, randomStream(seed, VEHICLE_STREAM, i)));
+            }
+        }
+    }
+
+    // Adds a vehicle handed over by another distributed worker; its store columns are filled in by the
+    // caller. Its random stream starts over from the one keyed by its number.
+    Vehicle addTransferredVehicle(String id, Vehicle.VehicleType type, double speed, int[] routeRoads,
+                                  int[] routeLights, int[] routeIntersections) {
+        int slot = vehicleStore.add(type, speed, routeRoads, routeLights, routeIntersections);
+        Vehicle vehicle = new Vehicle(id, vehicleStore, slot, clock,
+                randomStream(seed, VEHICLE_STREAM, Integer.parseInt(id.substring(1))));
+        vehicles.add(vehicle);
+        return vehicle;
+    }
+
+    // Road R i-j leads into X i-(j+1) and C i-j into X (i+1)-j, so the approaches of X i-j are
+    // R i-(j-1) and C (i-1)-j. Lights on the last row and column lead nowhere and cycle alone.
+    private void setupSignalController(int gridSize) {
+        signalController = new SignalController(clock);
+        signalGroups.clear();
+        Set<TrafficLight> grouped = new HashSet<>();
+        for (int i = 0; i < gridSize; i++) {
+            for (int j = 0; j < gridSize; j++) {
+                List<TrafficLight> approaches = new ArrayList<>();
+                Road fromWest = roadMap.get("R" + i + "-" + (j - 1));
+                Road fromNorth = roadMap.get("C" + (i - 1) + "-" + j);
+                if (fromWest != null) {
+                    approaches.add(roadLightMap.get(fromWest));
+                }
+                if (fromNorth != null) {
+                    approaches.add(roadLightMap.get(fromNorth));
+                }
+                if (!approaches.isEmpty()) {
+                    signalController.addGroup(approaches);
+                    signalGroups.add(approaches);
+                    grouped.addAll(approaches);
+                }
+            }
+        }
+        for (TrafficLight light : lights) {
+            if (!grouped.contains(light)) {
+                signalController.addGroup(List.of(light));
+                signalGroups.add(List.of(light));
+            }
+        }
+    }
+
     public void startSimulation() {
-        lights.forEach(Thread::start);
-        vehicles.forEach(Thread::start);
+        switch (executionMode) {
+            case THREADS -> {
+                if (signalMode == SignalMode.CONTROLLER) {
+                    signalController.start();
+                } else {
+                    lights.forEach(Thread::start);
+                }
+                vehicles.forEach(Thread::start);
+            }
+            case VIRTUAL_THREADS -> {
+                if (signalMode == SignalMode.CONTROLLER) {
+                    signalController.start();
+                }
+                virtualThreadRunner = new VirtualThreadRunner();
+                virtualThreadRunner.start(signalMode == SignalMode.CONTROLLER ? List.of() : lights, vehicles);
+            }
+            case FIXED_STEP -> getEngine().start(true);
+            case PARALLEL_STEP -> getParallelEngine().start(true);
+            case DISCRETE_EVENT -> getDiscreteEventSimulation().start(true);
+        }
     }
 
     public void stopSimulation() {
+        if (engine != null) {
+            engine.stop();
+        }
+        if (discreteEventSimulation != null) {
+            discreteEventSimulation.stop();
+        }
+        if (parallelEngine != null) {
+            parallelEngine.stop();
+            parallelEngine.close();
+        }
+        if (signalController != null) {
+            signalController.stop();
+        }
         vehicles.forEach(Vehicle::stopVehicle);
         lights.forEach(Thread::interrupt);
+        if (virtualThreadRunner != null) {
+            virtualThreadRunner.stop();
+        }
+    }
+
+    public void pauseSimulation() {
+        switch (executionMode) {
+            case FIXED_STEP -> getEngine().stop();
+            case PARALLEL_STEP -> getParallelEngine().stop();
+            case DISCRETE_EVENT -> getDiscreteEventSimulation().stop();
+            default -> stopSimulation();
+        }
+    }
+
+    public void resumeSimulation() {
+        startSimulation();
+    }
+
+    public SimulationEngine getEngine() {
+        if (engine == null) {
+            engine = new SimulationEngine(this);
+        }
+        return engine;
+    }
+
+    public DiscreteEventSimulation getDiscreteEventSimulation() {
+        if (discreteEventSimulation == null) {
+            discreteEventSimulation = new DiscreteEventSimulation(this);
+        }
+        return discreteEventSimulation;
+    }
+
+    public ParallelSimulationEngine getParallelEngine() {
+        if (parallelEngine == null) {
+            parallelEngine = new ParallelSimulationEngine(this);
+        }
+        return parallelEngine;
+    }
+
+    // Null unless the simulation was started in VIRTUAL_THREADS mode
+    public VirtualThreadRunner getVirtualThreadRunner() {
+        return virtualThreadRunner;
+    }
+
+    private boolean isThreaded() {
+        return executionMode == ExecutionMode.THREADS || executionMode == ExecutionMode.VIRTUAL_THREADS;
+    }
+
+    public VirtualClock getVirtualClock() {
+        return virtualClock;
+    }
+
+    public SimulationClock getClock() {
+        return clock;
+    }
+
+    // Master seed of the lights and vehicles created from now on. With the same seed and settings,
+    // the stepped modes replay the same run, whatever the thread count; the thread modes still
+    // depend on scheduling.
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // Stream of one light, vehicle or route generator: keyed by what it belongs to rather than by
+    // creation order, so distributed workers building parts of the city agree on it
+    static SplittableRandom randomStream(long seed, int kind, long index) {
+        long key = seed ^ (((long) kind << 40) + index) * 0x9E3779B97F4A7C15L;
+        // MurmurHash3 finalizer; seeds that differ by a multiple of SplittableRandom's gamma
+        // would otherwise give shifted copies of one stream
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return new SplittableRandom(key ^ (key >>> 33));
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    // Applies to intersections created by the next setupGridCity
+    public void setAdmissionMode(Intersection.AdmissionMode admissionMode) {
+        this.admissionMode = admissionMode;
+    }
+
+    public Intersection.AdmissionMode getAdmissionMode() {
+        return admissionMode;
+    }
+
+    public void setSignalMode(SignalMode signalMode) {
+        this.signalMode = signalMode;
+    }
+
+    public SignalMode getSignalMode() {
+        return signalMode;
+    }
+
+    // Applies to vehicles added after the call
+    public void setRouteMode(RouteMode routeMode) {
+        this.routeMode = routeMode;
+    }
+
+    public RouteMode getRouteMode() {
+        return routeMode;
+    }
+
+    // Shortest-path routing over the current grid, built on first use (landmark preprocessing)
+    public RoutingEngine getRoutingEngine() {
+        if (routingEngine == null) {
+            routingEngine = RoutingEngine.grid(gridSize, RoutingEngine.DEFAULT_LANDMARKS,
+                    RoutingEngine.DEFAULT_CACHE_SIZE);
+        }
+        return routingEngine;
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    // Grid cell (row * gridSize + column) of the intersection a road leads into. Roads on the
+    // last row or column lead nowhere and report their own cell.
+    public int getDownstreamCell(Road road) {
+        int cell = road.getIndex() / 2; // roads are created R, C per cell in row-major order
+        int row = cell / gridSize;
+        int column = cell % gridSize;
+        if (road.getDirection() == Direction.EAST) {
+            column = Math.min(column + 1, gridSize - 1);
+        } else {
+            row = Math.min(row + 1, gridSize - 1);
+        }
+        return row * gridSize + column;
+    }
+
+    // Lights the signal controller cycles together, one list per intersection or lone light
+    public List<List<TrafficLight>> getSignalGroups() {
+        return signalGroups;
+    }
+
+    // Drives the lights in CONTROLLER signal mode; created by setupGridCity
+    public SignalController getSignalController() {
+        return signalController;
     }
 
     public Road getRoadById(String roadId) {
@@ -115,6 +427,16 @@ public class CityMap {
         return vehicles;
     }
 
+    // Columnar state of the vehicles; slot i belongs to getVehicles().get(i)
+    public VehicleStore getVehicleStore() {
+        return vehicleStore;
+    }
+
+    // Latency histograms and counters of the current grid
+    public SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
     public List<Road> getRoads() {
         return roads;
     }
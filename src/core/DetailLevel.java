@@ -0,0 +1,7 @@
+// What the dynamic layer of the GUI shows at the current zoom; only the drawing changes,
+// never the simulation
+public enum DetailLevel {
+    VEHICLES, // sprites, trails and lights
+    DENSITY,  // each road colored by vehicles per capacity
+    HEATMAP   // one smoothed pixel per grid cell
+}
@@ -0,0 +1,218 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Runs a CityMap as a time-ordered event queue on its VirtualClock. Lights and vehicles are
+// only stepped when a phase ends, a move finishes, a back-off expires or something they
+// wait on changes, so idle periods cost nothing.
+public class DiscreteEventSimulation {
+    private final CityMap cityMap;
+    private final VirtualClock clock;
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    private final Map<Object, Integer> generations = new IdentityHashMap<>();
+    private final Map<Intersection, List<Vehicle>> waitingAtIntersection = new HashMap<>();
+    private long sequence = 0;
+    private long processedEvents = 0;
+    private int unfinishedVehicles;
+    private boolean initialized = false;
+    private volatile boolean running = false;
+    private Thread worker;
+
+    // Ordered by time, then by scheduling order so runs are repeatable
+    private record Event(long time, long sequence, Object target, int generation) implements Comparable<Event> {
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public DiscreteEventSimulation(CityMap cityMap) {
+        this.cityMap = cityMap;
+        this.clock = cityMap.getVirtualClock();
+    }
+
+    // Processes every event up to and including the given simulated time
+    public synchronized void runUntil(long endTime) {
+        initialize();
+        while (!queue.isEmpty() && queue.peek().time() <= endTime && unfinishedVehicles > 0) {
+            Event event = queue.poll();
+            if (generations.get(event.target()) != event.generation()) {
+                continue; // superseded by a later reschedule
+            }
+            clock.advanceTo(event.time());
+            processedEvents++;
+            if (event.target() instanceof SignalController controller) {
+                handleController(controller, event.time());
+            } else if (event.target() instanceof TrafficLight light) {
+                handleLight(light, event.time());
+            } else {
+                handleVehicle((Vehicle) event.target(), event.time());
+            }
+        }
+        if (unfinishedVehicles > 0) {
+            clock.advanceTo(endTime);
+        }
+    }
+
+    public void runFor(long durationMillis) {
+        runUntil(clock.currentTimeMillis() + durationMillis);
+    }
+
+    public synchronized boolean isFinished() {
+        if (initialized) {
+            return unfinishedVehicles == 0;
+        }
+        for (Vehicle vehicle : cityMap.getVehicles()) {
+            if (!vehicle.isFinished()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void initialize() {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        unfinishedVehicles = cityMap.getVehicles().size();
+        long now = clock.currentTimeMillis();
+        if (cityMap.getSignalMode() == CityMap.SignalMode.CONTROLLER) {
+            schedule(cityMap.getSignalController(), now);
+        } else {
+            for (TrafficLight light : cityMap.getLights()) {
+                schedule(light, now);
+            }
+        }
+        for (Vehicle vehicle : cityMap.getVehicles()) {
+            schedule(vehicle, now);
+        }
+    }
+
+    private void handleLight(TrafficLight light, long now) {
+        // Vehicles waiting for this light are woken by their green listeners inside step()
+        long next = light.step(now);
+        schedule(light, next);
+    }
+
+    // One event for the whole controller; it reports when its next light changes
+    private void handleController(SignalController controller, long now) {
+        long next = controller.step(now);
+        if (next != Long.MAX_VALUE) {
+            schedule(controller, next);
+        }
+    }
+
+    private void handleVehicle(Vehicle vehicle, long now) {
+        boolean wasFinished = vehicle.isFinished();
+        Intersection waitingBefore = vehicle.getWaitingIntersection();
+        Intersection occupiedBefore = vehicle.getOccupiedIntersection();
+        long next = vehicle.step(now);
+        if (next != Long.MAX_VALUE) {
+            schedule(vehicle, next);
+        }
+        if (!wasFinished && vehicle.isFinished()) {
+            unfinishedVehicles--;
+        }
+
+        TrafficLight light = vehicle.getWaitingLight();
+        if (light != null) {
+            light.addGreenListener(() -> schedule(vehicle, clock.currentTimeMillis()));
+        }
+        Intersection waitingAfter = vehicle.getWaitingIntersection();
+        if (waitingAfter != null && waitingAfter != waitingBefore) {
+            waitingAtIntersection.computeIfAbsent(waitingAfter, x -> new ArrayList<>()).add(vehicle);
+        }
+        if (waitingBefore != null && waitingBefore != waitingAfter) {
+            List<Vehicle> waiting = waitingAtIntersection.get(waitingBefore);
+            waiting.remove(vehicle);
+            if (vehicle.getOccupiedIntersection() != waitingBefore) {
+                // Gave up waiting: the next oldest may be allowed in now
+                wakeAll(waiting, now);
+            }
+        }
+        if (occupiedBefore != null && occupiedBefore != vehicle.getOccupiedIntersection()) {
+            // Left the intersection: let the queue try again
+            wakeAll(waitingAtIntersection.get(occupiedBefore), now);
+        }
+    }
+
+    private void wakeAll(List<Vehicle> vehicles, long now) {
+        if (vehicles != null) {
+            for (Vehicle vehicle : vehicles) {
+                schedule(vehicle, now);
+            }
+        }
+    }
+
+    private void schedule(Object target, long time) {
+        int generation = generations.merge(target, 1, Integer::sum);
+        queue.add(new Event(time, sequence++, target, generation));
+    }
+
+    // Processes events on a background thread; realTime keeps simulated time in step with the wall clock
+    public synchronized void start(boolean realTime) {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(() -> loop(realTime), "discrete-event-simulation");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = worker;
+            worker = null;
+        }
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        cityMap.getLights().forEach(TrafficLight::stopStepping);
+    }
+
+    private void loop(boolean realTime) {
+        long startWall = System.currentTimeMillis();
+        long startSimulation = clock.currentTimeMillis();
+        while (running && !isFinished()) {
+            if (realTime) {
+                runUntil(startSimulation + (System.currentTimeMillis() - startWall));
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            } else {
+                if (queue.isEmpty() && initialized) {
+                    break;
+                }
+                runFor(1000);
+            }
+        }
+        running = false;
+    }
+
+    public long getSimulationTime() {
+        return clock.currentTimeMillis();
+    }
+
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Coordinator of a grid city split across DistributedWorkers by row strips. Workers run in
+// lockstep epochs of simulated time; between epochs the coordinator relays the vehicles that
+// crossed a strip boundary and can merge every worker's statistics into one SimulationStats.
+public class DistributedSimulation implements AutoCloseable {
+    public static final long DEFAULT_EPOCH_MILLIS = 100;
+
+    private final Transport transport;
+    private final int workerCount;
+    private final long epochMillis;
+    private List<Transport.Channel> channels = List.of();
+    private List<List<byte[]>> inbound = new ArrayList<>(); // vehicles waiting to be delivered, per worker
+    private long simulationTime = 0;
+    private int unfinishedVehicles = -1;
+    private long transferredVehicles = 0;
+
+    // epochMillis: how much simulated time workers run between boundary exchanges
+    public DistributedSimulation(Transport transport, int workerCount, long epochMillis) {
+        if (workerCount <= 0 || epochMillis <= 0) {
+            throw new IllegalArgumentException("Worker count and epoch must be positive");
+        }
+        this.transport = transport;
+        this.workerCount = workerCount;
+        this.epochMillis = epochMillis;
+    }
+
+    // Starts the workers and has each build the grid and its share of the vehicles. All workers use
+    // the same seed, so with the same worker count a run can be repeated.
+    public void setupGridCity(int gridSize, int vehicleCount, Intersection.AdmissionMode admissionMode,
+                              CityMap.SignalMode signalMode, CityMap.RouteMode routeMode, long stepMillis,
+                              long seed)
+            throws IOException {
+        if (workerCount > gridSize) {
+            throw new IllegalArgumentException("At most one worker per grid row: " + workerCount + " > " + gridSize);
+        }
+        channels = transport.open(workerCount);
+        inbound = new ArrayList<>();
+        for (int worker = 0; worker < workerCount; worker++) {
+            inbound.add(new ArrayList<>());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(DistributedWorker.SETUP);
+            out.writeInt(worker);
+            out.writeInt(workerCount);
+            out.writeInt(gridSize);
+            out.writeInt(vehicleCount);
+            out.writeLong(stepMillis);
+            out.writeLong(seed);
+            out.writeByte(admissionMode.ordinal());
+            out.writeByte(signalMode.ordinal());
+            out.writeByte(routeMode.ordinal());
+            channels.get(worker).send(bytes.toByteArray());
+        }
+        collectHandOvers();
+    }
+
+    // Runs epochs until the given simulated duration passes or every vehicle is done
+    public void runFor(long durationMillis) throws IOException {
+        long endTime = simulationTime + durationMillis;
+        while (simulationTime < endTime && !isFinished()) {
+            simulationTime = Math.min(endTime, simulationTime + epochMillis);
+            // All workers run the epoch at once; only then are the replies read
+            for (int worker = 0; worker < workerCount; worker++) {
+                channels.get(worker).send(request(DistributedWorker.EPOCH, worker, simulationTime));
+            }
+            collectHandOvers();
+        }
+    }
+
+    private void collectHandOvers() throws IOException {
+        int unfinished = 0;
+        for (Transport.Channel channel : channels) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(channel.receive()));
+            unfinished += in.readInt();
+            int leaving = in.readInt();
+            for (int i = 0; i < leaving; i++) {
+                int destination = in.readInt();
+                byte[] vehicle = new byte[in.readInt()];
+                in.readFully(vehicle);
+                inbound.get(destination).add(vehicle);
+                unfinished++;
+            }
+            transferredVehicles += leaving;
+        }
+        unfinishedVehicles = unfinished;
+    }
+
+    // Message type, the vehicles waiting for this worker, then an optional epoch end
+    private byte[] request(byte type, int worker, long endTime) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        List<byte[]> vehicles = inbound.get(worker);
+        out.writeInt(vehicles.size());
+        for (byte[] vehicle : vehicles) {
+            out.writeInt(vehicle.length);
+            out.write(vehicle);
+        }
+        vehicles.clear();
+        if (type == DistributedWorker.EPOCH) {
+            out.writeLong(endTime);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // Merged statistics of all workers; vehicles in transit are delivered first so none is missed
+    public SimulationStats collectStats() throws IOException {
+        for (int worker = 0; worker < workerCount; worker++) {
+            channels.get(worker).send(request(DistributedWorker.STATS, worker, 0));
+        }
+        List<SimulationStats> parts = new ArrayList<>();
+        for (Transport.Channel channel : channels) {
+            parts.add(SimulationStats.readFrom(new DataInputStream(new ByteArrayInputStream(channel.receive()))));
+        }
+        return SimulationStats.merge(parts);
+    }
+
+    public boolean isFinished() {
+        return unfinishedVehicles == 0;
+    }
+
+    public long getSimulationTime() {
+        return simulationTime;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    // Boundary crossings relayed so far
+    public long getTransferredVehicles() {
+        return transferredVehicles;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Transport.Channel channel : channels) {
+            try {
+                channel.send(new byte[] {DistributedWorker.STOP});
+            } catch (IOException e) {
+                // worker already gone
+            }
+        }
+        transport.close();
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// One partition of a DistributedSimulation. Every worker builds the same grid but only steps a
+// strip of rows: the roads leading into those rows' intersections, their lights and the vehicles
+// on them, like a tile of ParallelSimulationEngine. Vehicles that move onto another strip's road
+// are serialized and sent to the coordinator, which delivers them with the next epoch.
+// Usage: DistributedWorker --coordinator HOST:PORT
+public class DistributedWorker {
+    // Coordinator to worker
+    static final byte SETUP = 1;
+    static final byte EPOCH = 2;
+    static final byte STATS = 3;
+    static final byte STOP = 4;
+
+    private final CityMap cityMap = new CityMap();
+    private final int workerIndex;
+    private final int workerCount;
+    private final int[] roadOwner;
+    private final PartitionEngine engine;
+    private final BitSet departed = new BitSet(); // slots handed over to another worker
+    private int[] owned = new int[16];
+    private int ownedCount = 0;
+
+    public static void main(String[] args) {
+        if (args.length != 2 || !args[0].equals("--coordinator") || args[1].lastIndexOf(':') < 0) {
+            System.err.println("Usage: DistributedWorker --coordinator HOST:PORT");
+            System.exit(2);
+        }
+        EventLog.setLevel(EventLog.Level.OFF);
+        String address = args[1];
+        int separator = address.lastIndexOf(':');
+        try (Socket socket = new Socket(address.substring(0, separator),
+                Integer.parseInt(address.substring(separator + 1)))) {
+            serve(new SocketTransport.SocketChannel(socket));
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Worker could not reach coordinator " + address + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    // Answers coordinator requests until STOP or until the channel closes
+    static void serve(Transport.Channel channel) {
+        DistributedWorker worker = null;
+        try {
+            while (true) {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(channel.receive()));
+                byte type = in.readByte();
+                if (type == STOP) {
+                    break;
+                }
+                if (type == SETUP) {
+                    worker = new DistributedWorker(in);
+                    channel.send(worker.handOver());
+                    continue;
+                }
+                if (worker == null) {
+                    throw new IOException("Request " + type + " before setup");
+                }
+                worker.receiveVehicles(in);
+                if (type == EPOCH) {
+                    worker.runUntil(in.readLong());
+                    channel.send(worker.handOver());
+                } else if (type == STATS) {
+                    channel.send(worker.statistics());
+                } else {
+                    throw new IOException("Unknown request " + type);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Worker stopped: " + e.getMessage());
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    private DistributedWorker(DataInputStream setup) throws IOException {
+        workerIndex = setup.readInt();
+        workerCount = setup.readInt();
+        int gridSize = setup.readInt();
+        int vehicleCount = setup.readInt();
+        long stepMillis = setup.readLong();
+        cityMap.setSeed(setup.readLong());
+        cityMap.setExecutionMode(CityMap.ExecutionMode.FIXED_STEP);
+        cityMap.setAdmissionMode(Intersection.AdmissionMode.values()[setup.readByte()]);
+        cityMap.setSignalMode(CityMap.SignalMode.values()[setup.readByte()]);
+        cityMap.setRouteMode(CityMap.RouteMode.values()[setup.readByte()]);
+        cityMap.setupGrid(gridSize);
+
+        List<Road> roads = cityMap.getRoads();
+        roadOwner = new int[roads.size()];
+        for (Road road : roads) {
+            roadOwner[road.getIndex()] = rowOwner(cityMap.getDownstreamCell(road) / gridSize, gridSize);
+        }
+        engine = new PartitionEngine(stepMillis);
+
+        // Each worker generates its share of vehicles, starting in its own rows
+        int firstId = (int) ((long) vehicleCount * workerIndex / workerCount);
+        int lastId = (int) ((long) vehicleCount * (workerIndex + 1) / workerCount);
+        cityMap.addRandomVehicles(firstId, lastId - firstId, firstRow(workerIndex, gridSize),
+                firstRow(workerIndex + 1, gridSize));
+        VehicleStore store = cityMap.getVehicleStore();
+        for (int slot = 0; slot < store.size(); slot++) {
+            own(slot);
+        }
+    }
+
+    private int firstRow(int worker, int gridSize) {
+        return gridSize * worker / workerCount;
+    }
+
+    private int rowOwner(int row, int gridSize) {
+        int worker = row * workerCount / gridSize;
+        while (firstRow(worker + 1, gridSize) <= row) {
+            worker++;
+        }
+        return worker;
+    }
+
+    private int ownerOf(VehicleStore store, int slot) {
+        int road = store.getLegRoadIndex(slot);
+        return roadOwner[road >= 0 ? road : store.getRoadIndex(slot)];
+    }
+
+    private void own(int slot) {
+        if (ownedCount == owned.length) {
+            owned = Arrays.copyOf(owned, ownedCount * 2);
+        }
+        owned[ownedCount++] = slot;
+    }
+
+    // Steps only this strip's signals and vehicles
+    private final class PartitionEngine extends SimulationEngine {
+        private final SignalController signals = new SignalController(cityMap.getClock());
+        private final List<TrafficLight> lights = new ArrayList<>();
+
+        PartitionEngine(long stepMillis) {
+            super(DistributedWorker.this.cityMap, stepMillis);
+            if (cityMap.getSignalMode() == CityMap.SignalMode.CONTROLLER) {
+                for (List<TrafficLight> group : cityMap.getSignalGroups()) {
+                    if (roadOwner[group.get(0).getIndex()] == workerIndex) {
+                        signals.addGroup(group);
+                    }
+                }
+            } else {
+                for (TrafficLight light : cityMap.getLights()) {
+                    if (roadOwner[light.getIndex()] == workerIndex) {
+                        lights.add(light);
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected int stepAll(long now) {
+            signals.step(now);
+            for (TrafficLight light : lights) {
+                light.step(now);
+            }
+            List<Vehicle> vehicles = cityMap.getVehicles();
+            int unfinished = 0;
+            for (int i = 0; i < ownedCount; i++) {
+                Vehicle vehicle = vehicles.get(owned[i]);
+                vehicle.step(now);
+                if (!vehicle.isFinished()) {
+                    unfinished++;
+                }
+            }
+            return unfinished;
+        }
+    }
+
+    // Steps to the end of the epoch even with no vehicles, so every worker's clock stays in line
+    private void runUntil(long endTime) {
+        while (engine.getSimulationTime() < endTime) {
+            engine.step();
+        }
+    }
+
+    // Reply to SETUP and EPOCH: unfinished vehicles kept here, then the vehicles leaving, each
+    // with the worker it goes to
+    private byte[] handOver() throws IOException {
+        VehicleStore store = cityMap.getVehicleStore();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<Integer> leaving = new ArrayList<>();
+        int unfinished = 0;
+        int kept = 0;
+        for (int i = 0; i < ownedCount; i++) {
+            int slot = owned[i];
+            if (store.isFinished(slot)) {
+                continue; // stays resident for the statistics, but needs no more steps
+            }
+            if (ownerOf(store, slot) == workerIndex) {
+                owned[kept++] = slot;
+                unfinished++;
+            } else {
+                leaving.add(slot);
+            }
+        }
+        ownedCount = kept;
+
+        out.writeInt(unfinished);
+        out.writeInt(leaving.size());
+        for (int slot : leaving) {
+            departed.set(slot);
+            out.writeInt(ownerOf(store, slot));
+            byte[] vehicle = writeVehicle(store, slot);
+            out.writeInt(vehicle.length);
+            out.write(vehicle);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // A vehicle only changes worker between legs (waiting for its light or backing off), so it
+    // holds no road or intersection and its store columns are all there is to send
+    private byte[] writeVehicle(VehicleStore store, int slot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(cityMap.getVehicles().get(slot).getVehicleId());
+        out.writeByte(store.type[slot]);
+        out.writeDouble(store.speed[slot]);
+        int legs = store.getRouteLength(slot);
+        out.writeInt(legs);
+        for (int leg = 0; leg < legs; leg++) {
+            out.writeInt(store.routeRoadIndex(slot, leg));
+            out.writeInt(store.routeLightIndex(slot, leg));
+            out.writeInt(store.routeIntersectionIndex(slot, leg));
+        }
+        out.writeBoolean(store.isActive(slot));
+        out.writeByte(store.phase[slot]);
+        out.writeInt(store.routeIndex[slot]);
+        out.writeInt(store.retryCount[slot]);
+        out.writeInt(store.position[slot]);
+        out.writeInt(store.roadIndex[slot]);
+        out.writeDouble(store.progress[slot]);
+        out.writeLong(store.totalWaitTime[slot]);
+        out.writeLong(store.waitStartTime[slot]);
+        out.writeLong(store.phaseDeadline[slot]);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void receiveVehicles(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            in.readInt(); // length, only needed by the coordinator
+            String id = in.readUTF();
+            Vehicle.VehicleType type = Vehicle.VehicleType.values()[in.readByte()];
+            double speed = in.readDouble();
+            int legs = in.readInt();
+            int[] routeRoads = new int[legs];
+            int[] routeLights = new int[legs];
+            int[] routeIntersections = new int[legs];
+            for (int leg = 0; leg < legs; leg++) {
+                routeRoads[leg] = in.readInt();
+                routeLights[leg] = in.readInt();
+                routeIntersections[leg] = in.readInt();
+            }
+            int slot = cityMap.addTransferredVehicle(id, type, speed, routeRoads, routeLights, routeIntersections)
+                    .getSlot();
+            VehicleStore store = cityMap.getVehicleStore();
+            store.setActive(slot, in.readBoolean());
+            store.phase[slot] = in.readByte();
+            store.routeIndex[slot] = in.readInt();
+            store.retryCount[slot] = in.readInt();
+            store.position[slot] = in.readInt();
+            store.roadIndex[slot] = in.readInt();
+            store.progress[slot] = in.readDouble();
+            store.addWaitTime(slot, in.readLong()); // new slot, so this sets it
+            store.waitStartTime[slot] = in.readLong();
+            store.phaseDeadline[slot] = in.readLong();
+            own(slot);
+        }
+    }
+
+    // Statistics of the vehicles resident here and of the roads and intersections this worker owns
+    private byte[] statistics() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        SimulationStats.collect(cityMap, engine.getSimulationTime(), slot -> !departed.get(slot),
+                road -> roadOwner[road.getIndex()] == workerIndex,
+                intersection -> rowOwner(intersection.getIndex() / cityMap.getGridSize(), cityMap.getGridSize())
+                        == workerIndex).writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,251 @@
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Structured simulation event log. Roads, intersections, vehicles and lights record typed events
+// into a lock-free ring buffer; a daemon writer drains it to the console (or a custom sink) in
+// batches, so simulation threads never block on the console lock. Events below the configured
+// level are discarded before anything is read or written. Each event is stamped by the clock of
+// the city it happened in, which the caller passes along.
+public final class EventLog {
+    public enum Level { DEBUG, INFO, WARN, OFF }
+
+    public enum Kind {
+        ROAD_ENTERED(Level.DEBUG),
+        ROAD_FULL(Level.INFO),
+        ROAD_LEFT(Level.DEBUG),
+        INTERSECTION_WAITING(Level.DEBUG),
+        INTERSECTION_ENTERED(Level.DEBUG),
+        INTERSECTION_TIMEOUT(Level.INFO),
+        INTERSECTION_EXITED(Level.DEBUG),
+        VEHICLE_MOVED(Level.DEBUG),
+        VEHICLE_RETRIES_EXHAUSTED(Level.WARN),
+        VEHICLE_RETURNING(Level.INFO),
+        VEHICLE_CANCELLED(Level.WARN),
+        VEHICLE_COMPLETED(Level.INFO),
+        LIGHT_CHANGED(Level.DEBUG),
+        LIGHT_EMERGENCY(Level.WARN);
+
+        private final Level level;
+
+        Kind(Level level) {
+            this.level = level;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+    }
+
+    // vehicleId is null for light events; subjectId is the road, intersection or light road id;
+    // value is a position or attempt count and detail a direction or light state, where relevant
+    public record Event(long timestamp, Kind kind, String vehicleId, String subjectId, long value, Enum<?> detail) {
+        public String format() {
+            return switch (kind) {
+                case ROAD_ENTERED -> "Vehicle " + vehicleId + " entered road " + subjectId;
+                case ROAD_FULL -> "Road " + subjectId + " is full.";
+                case ROAD_LEFT -> "Vehicle " + vehicleId + " left road " + subjectId;
+                case INTERSECTION_WAITING -> "Vehicle " + vehicleId + " is waiting to enter intersection " + subjectId;
+                case INTERSECTION_ENTERED -> "Vehicle " + vehicleId + " entered intersection " + subjectId;
+                case INTERSECTION_TIMEOUT -> "Vehicle " + vehicleId + " timeout at intersection " + subjectId + ", backing off";
+                case INTERSECTION_EXITED -> "Vehicle " + vehicleId + " exited intersection " + subjectId;
+                case VEHICLE_MOVED -> "Vehicle " + vehicleId + " moved to position " + value + " on road "
+                        + subjectId + " [" + detail + "]";
+                case VEHICLE_RETRIES_EXHAUSTED -> "Vehicle " + vehicleId + " failed to proceed after " + value + " attempts";
+                case VEHICLE_RETURNING -> "Vehicle " + vehicleId + " is returning to previous road";
+                case VEHICLE_CANCELLED -> "Vehicle " + vehicleId + " cancelling route";
+                case VEHICLE_COMPLETED -> "Vehicle " + vehicleId + " completed its route";
+                case LIGHT_CHANGED -> "Traffic light on road " + subjectId + " changed to: " + detail;
+                case LIGHT_EMERGENCY -> "Emergency mode activated for traffic light on road " + subjectId;
+            };
+        }
+    }
+
+    private static final int CAPACITY = 1 << 16; // power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_BATCH = 4096;
+    private static final Kind[] KINDS = Kind.values();
+
+    private static volatile int threshold = initialLevel().ordinal();
+    private static volatile Consumer<Event> sink; // null: print to System.out
+    private static volatile Thread writer;
+    private static volatile boolean writerSleeping; // parked until the next event
+
+    // Ring slots as parallel arrays; published[i] holds the sequence last written to slot i
+    private static final long[] timestamps = new long[CAPACITY];
+    private static final byte[] kinds = new byte[CAPACITY];
+    private static final String[] vehicleIds = new String[CAPACITY];
+    private static final String[] subjectIds = new String[CAPACITY];
+    private static final long[] values = new long[CAPACITY];
+    private static final Enum<?>[] details = new Enum<?>[CAPACITY];
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong tail = new AtomicLong(); // next sequence to claim
+    private static final AtomicLong head = new AtomicLong(); // next sequence to drain
+    private static final LongAdder dropped = new LongAdder();
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    private EventLog() {
+    }
+
+    // -Dtraffic.log.level=DEBUG|INFO|WARN|OFF, everything by default like the old console output
+    private static Level initialLevel() {
+        String configured = System.getProperty("traffic.log.level");
+        if (configured != null) {
+            try {
+                return Level.valueOf(configured.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // fall through to the default
+            }
+        }
+        return Level.DEBUG;
+    }
+
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    public static Level getLevel() {
+        return Level.values()[threshold];
+    }
+
+    public static boolean isEnabled(Kind kind) {
+        return kind.level.ordinal() >= threshold;
+    }
+
+    // Receives every drained event on the writer thread instead of the console; null restores the console
+    public static void setSink(Consumer<Event> eventSink) {
+        sink = eventSink;
+    }
+
+    // clock: the city's, so stepped modes log simulated time; only read if the event is kept
+    public static void log(SimulationClock clock, Kind kind, String vehicleId, String subjectId) {
+        if (kind.level.ordinal() >= threshold) {
+            publish(clock.currentTimeMillis(), kind, vehicleId, subjectId, 0, null);
+        }
+    }
+
+    public static void log(SimulationClock clock, Kind kind, String vehicleId, String subjectId, long value,
+                           Enum<?> detail) {
+        if (kind.level.ordinal() >= threshold) {
+            publish(clock.currentTimeMillis(), kind, vehicleId, subjectId, value, detail);
+        }
+    }
+
+    private static void publish(long timestamp, Kind kind, String vehicleId, String subjectId, long value,
+                                Enum<?> detail) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() >= CAPACITY) {
+                // Writer is behind: drop rather than stall the simulation
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) (sequence & MASK);
+        timestamps[index] = timestamp;
+        kinds[index] = (byte) kind.ordinal();
+        vehicleIds[index] = vehicleId;
+        subjectIds[index] = subjectId;
+        values[index] = value;
+        details[index] = detail;
+        published.lazySet(index, sequence);
+
+        Thread current = writer;
+        if (current == null) {
+            startWriter();
+        } else if (writerSleeping) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    private static synchronized void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        Thread thread = new Thread(EventLog::drainLoop, "event-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000), "event-log-flush"));
+        writer = thread;
+    }
+
+    // Parks without a timeout once the ring is empty, so an idle log costs no wake-ups. The writer
+    // announces it is sleeping before it looks at tail one last time; a publisher claims its
+    // sequence on tail before it looks at the flag, so one of the two always sees the other.
+    private static void drainLoop() {
+        while (true) {
+            if (drain() > 0) {
+                continue;
+            }
+            writerSleeping = true;
+            if (head.get() == tail.get()) {
+                LockSupport.park();
+            } else {
+                // Claimed but still being written
+                Thread.onSpinWait();
+            }
+            writerSleeping = false;
+        }
+    }
+
+    // Writes out the published events in sequence order; returns how many were written
+    private static synchronized int drain() {
+        Consumer<Event> eventSink = sink;
+        StringBuilder batch = eventSink == null ? new StringBuilder() : null;
+        long sequence = head.get();
+        int count = 0;
+        while (count < MAX_BATCH) {
+            int index = (int) (sequence & MASK);
+            if (published.get(index) != sequence) {
+                break; // not claimed yet, or claimed but still being written
+            }
+            Event event = new Event(timestamps[index], KINDS[kinds[index]], vehicleIds[index],
+                    subjectIds[index], values[index], details[index]);
+            vehicleIds[index] = null;
+            subjectIds[index] = null;
+            details[index] = null;
+            head.lazySet(++sequence);
+            count++;
+            if (eventSink != null) {
+                eventSink.accept(event);
+            } else {
+                batch.append(event.format()).append(System.lineSeparator());
+            }
+        }
+        if (batch != null && batch.length() > 0) {
+            // One console write per batch instead of one per event
+            PrintStream out = System.out;
+            out.print(batch);
+            out.flush();
+        }
+        return count;
+    }
+
+    // Blocks until everything recorded so far has been written, or the timeout passes
+    public static void flush(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long target = tail.get();
+        while (head.get() < target && System.nanoTime() < deadline) {
+            if (drain() == 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    // Events discarded because the ring buffer was full
+    public static long getDroppedCount() {
+        return dropped.sum();
+    }
+}
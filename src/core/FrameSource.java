@@ -0,0 +1,9 @@
+// Where the GUI takes its CityFrames from: a running city through SnapshotPublisher, or a
+// recorded run through JournalPlayer. latest() has a single reader at a time.
+public interface FrameSource {
+    // The newest frame, unchanged until the next call. A source may return the same object again
+    // with new contents; its time tells the two apart.
+    CityFrame latest();
+
+    void stop();
+}
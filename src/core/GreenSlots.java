@@ -0,0 +1,53 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+// How many of a city's lights may be green at once in PER_LIGHT signal mode. Each CityMap has
+// its own, shared by its lights and nothing else, so separate cities and workers never hold
+// each other's lights red.
+public class GreenSlots {
+    public static final int DEFAULT_CAPACITY = 2;
+    private static final long RETRY_MILLIS = 500;
+
+    private final int capacity;
+    private final AtomicInteger used = new AtomicInteger(0);
+
+    public GreenSlots() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public GreenSlots(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = used.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!used.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // For light threads: checks again every RETRY_MILLIS until a slot is free
+    public void acquire() throws InterruptedException {
+        while (!tryAcquire()) {
+            Thread.sleep(RETRY_MILLIS);
+        }
+    }
+
+    public void release() {
+        used.decrementAndGet();
+    }
+
+    public int getUsed() {
+        return used.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
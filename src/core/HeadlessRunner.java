@@ -0,0 +1,359 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+
+// Runs a grid city without JavaFX and writes summary statistics.
+// Usage: HeadlessRunner [--grid N] [--vehicles N] [--duration SECONDS] [--mode MODE]
+//                       [--step MILLIS] [--admission MODE] [--signals MODE] [--tile N] [--threads N]
+//                       [--routing MODE] [--workers N] [--transport IN_PROCESS|SOCKET] [--output FILE]
+//                       [--metrics-interval SECONDS] [--seed N] [--journal FILE]
+//                       [--journal-interval MILLIS] [--verbose]
+// The seed is reported; passing it back with the same options repeats a stepped or discrete-event run
+// in either signal mode, and a distributed run with the same number of workers.
+// --journal records the run for replay in the GUI, every journal interval of simulated time.
+// With --workers the city is split across distributed workers, which always step at a fixed rate.
+// Single-process runs also report latency percentiles, expose SimulationMetrics over JMX as
+// name=headless, and with --metrics-interval print what changed over each interval to stderr.
+public class HeadlessRunner {
+    private static final long SAMPLE_INTERVAL = 1000; // congestion sample every simulated second
+
+    private int gridSize = 5;
+    private int vehicleCount = 10;
+    private long durationMillis = 3_600_000;
+    private CityMap.ExecutionMode mode = CityMap.ExecutionMode.DISCRETE_EVENT;
+    private long stepMillis = SimulationEngine.DEFAULT_STEP_MILLIS;
+    private Intersection.AdmissionMode admissionMode = Intersection.AdmissionMode.OLDEST_FIRST;
+    private CityMap.SignalMode signalMode = CityMap.SignalMode.CONTROLLER;
+    private CityMap.RouteMode routeMode = CityMap.RouteMode.RANDOM_STEPS;
+    private int tileSize = ParallelSimulationEngine.DEFAULT_TILE_SIZE;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int workerCount = 0;
+    private String transportName = "SOCKET";
+    private String outputFile;
+    private long metricsIntervalMillis = 0;
+    private long seed = ThreadLocalRandom.current().nextLong();
+    private String journalFile;
+    private long journalIntervalMillis = 100;
+    private JournalRecorder journal;
+    private boolean verbose = false;
+
+    private long congestionSamples = 0;
+    private long congestionSum = 0;
+    private int peakCongestion = 0;
+
+    public static void main(String[] args) {
+        HeadlessRunner runner = new HeadlessRunner();
+        try {
+            runner.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: HeadlessRunner [--grid N] [--vehicles N] [--duration SECONDS]"
+                    + " [--mode THREADS|VIRTUAL_THREADS|FIXED_STEP|PARALLEL_STEP|DISCRETE_EVENT] [--step MILLIS]"
+                    + " [--admission OLDEST_FIRST|FIFO] [--signals PER_LIGHT|CONTROLLER] [--tile N] [--threads N]"
+                    + " [--routing RANDOM_STEPS|SHORTEST_PATH] [--workers N] [--transport IN_PROCESS|SOCKET]"
+                    + " [--output FILE] [--metrics-interval SECONDS] [--seed N] [--journal FILE]"
+                    + " [--journal-interval MILLIS] [--verbose]");
+            System.exit(2);
+        }
+
+        // Vehicles, roads and lights log every move; only keep that with --verbose
+        EventLog.setLevel(runner.verbose ? EventLog.Level.DEBUG : EventLog.Level.OFF);
+        String report;
+        try {
+            report = runner.run();
+        } catch (IOException e) {
+            System.err.println((runner.workerCount > 0 ? "Distributed run failed: " : "Could not write journal: ")
+                    + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        EventLog.flush(5000);
+        try {
+            if (runner.outputFile != null) {
+                try (PrintStream out = new PrintStream(new FileOutputStream(runner.outputFile))) {
+                    out.print(report);
+                }
+            } else {
+                System.out.print(report);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write " + runner.outputFile + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--verbose")) {
+                verbose = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            try {
+                switch (arg) {
+                    case "--grid" -> gridSize = Integer.parseInt(value);
+                    case "--vehicles" -> vehicleCount = Integer.parseInt(value);
+                    case "--duration" -> durationMillis = Long.parseLong(value) * 1000;
+                    case "--mode" -> mode = CityMap.ExecutionMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "--step" -> stepMillis = Long.parseLong(value);
+                    case "--admission" -> admissionMode =
+                            Intersection.AdmissionMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "--signals" -> signalMode = CityMap.SignalMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "--routing" -> routeMode = CityMap.RouteMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "--tile" -> tileSize = Integer.parseInt(value);
+                    case "--threads" -> parallelism = Integer.parseInt(value);
+                    case "--workers" -> workerCount = Integer.parseInt(value);
+                    case "--transport" -> transportName = value.toUpperCase(Locale.ROOT);
+                    case "--output" -> outputFile = value;
+                    case "--metrics-interval" -> metricsIntervalMillis = Long.parseLong(value) * 1000;
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--journal" -> journalFile = value;
+                    case "--journal-interval" -> journalIntervalMillis = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + arg + ": " + value);
+            }
+        }
+        if (gridSize < 2 || vehicleCount < 0 || durationMillis <= 0 || stepMillis <= 0 || tileSize <= 0
+                || parallelism <= 0 || workerCount < 0 || workerCount > gridSize || metricsIntervalMillis < 0
+                || journalIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Grid must be at least 2, duration, step, tile, threads and journal"
+                    + " interval positive, workers at most the grid size");
+        }
+        if (journalFile != null && workerCount > 0) {
+            throw new IllegalArgumentException("--journal records single-process runs only");
+        }
+        if (!transportName.equals("SOCKET") && !transportName.equals("IN_PROCESS")) {
+            throw new IllegalArgumentException("Unknown transport " + transportName);
+        }
+    }
+
+    private String run() throws IOException {
+        if (workerCount > 0) {
+            return runDistributed();
+        }
+        long setupStart = System.nanoTime();
+        CityMap cityMap = new CityMap();
+        cityMap.setSeed(seed);
+        cityMap.setExecutionMode(mode);
+        cityMap.setAdmissionMode(admissionMode);
+        cityMap.setSignalMode(signalMode);
+        cityMap.setRouteMode(routeMode);
+        cityMap.setupGridCity(gridSize, vehicleCount);
+        long setupMillis = (System.nanoTime() - setupStart) / 1_000_000;
+
+        SimulationMetrics metrics = cityMap.getMetrics();
+        try {
+            metrics.registerMBean("headless");
+        } catch (JMException e) {
+            System.err.println("Could not register metrics MBean: " + e.getMessage());
+        }
+        if (metricsIntervalMillis > 0) {
+            metrics.startReporting(metricsIntervalMillis, interval -> System.err.println(interval.format()));
+        }
+        if (journalFile != null) {
+            journal = new JournalRecorder(cityMap, Paths.get(journalFile));
+        }
+
+        long runStart = System.nanoTime();
+        long simulatedMillis = switch (mode) {
+            case FIXED_STEP -> runFixedStep(cityMap, new SimulationEngine(cityMap, stepMillis));
+            case PARALLEL_STEP -> runFixedStep(cityMap,
+                    new ParallelSimulationEngine(cityMap, stepMillis, tileSize, parallelism));
+            case DISCRETE_EVENT -> runDiscreteEvent(cityMap);
+            default -> runThreads(cityMap);
+        };
+        long wallMillis = (System.nanoTime() - runStart) / 1_000_000;
+        if (journal != null) {
+            journal.close();
+        }
+
+        SimulationStats stats = SimulationStats.collect(cityMap, simulatedMillis);
+        MetricsSnapshot snapshot = metrics.snapshot();
+        metrics.stopReporting();
+        VirtualThreadRunner runner = cityMap.getVirtualThreadRunner();
+        cityMap.stopSimulation();
+
+        StringBuilder report = new StringBuilder();
+        appendLine(report, "mode", mode);
+        appendLine(report, "seed", seed);
+        appendReport(report, stats, setupMillis, wallMillis, simulatedMillis);
+        appendMetrics(report, snapshot);
+        if (runner != null) {
+            // Sampled while running, so a lower bound on the carriers actually used
+            appendLine(report, "carrier_threads", runner.getObservedCarrierCount());
+        }
+        if (journal != null) {
+            appendLine(report, "journal_bytes", journal.getSize());
+        }
+        return report.toString();
+    }
+
+    // Same report, from the statistics the workers send back
+    private String runDistributed() throws IOException {
+        Transport transport = transportName.equals("IN_PROCESS")
+                ? new InProcessTransport() : SocketTransport.localProcesses();
+        try (DistributedSimulation simulation = new DistributedSimulation(transport, workerCount,
+                DistributedSimulation.DEFAULT_EPOCH_MILLIS)) {
+            long setupStart = System.nanoTime();
+            simulation.setupGridCity(gridSize, vehicleCount, admissionMode, signalMode, routeMode, stepMillis,
+                    seed);
+            long setupMillis = (System.nanoTime() - setupStart) / 1_000_000;
+
+            long runStart = System.nanoTime();
+            while (simulation.getSimulationTime() < durationMillis && !simulation.isFinished()) {
+                simulation.runFor(Math.min(SAMPLE_INTERVAL, durationMillis - simulation.getSimulationTime()));
+                recordCongestion(simulation.collectStats().getCongestionPercent());
+            }
+            long wallMillis = (System.nanoTime() - runStart) / 1_000_000;
+            SimulationStats stats = simulation.collectStats();
+
+            StringBuilder report = new StringBuilder();
+            appendLine(report, "mode", CityMap.ExecutionMode.FIXED_STEP);
+            appendLine(report, "seed", seed);
+            appendLine(report, "workers", workerCount);
+            appendLine(report, "transport", transportName);
+            appendLine(report, "transferred", simulation.getTransferredVehicles());
+            appendReport(report, stats, setupMillis, wallMillis, simulation.getSimulationTime());
+            return report.toString();
+        }
+    }
+
+    private void appendReport(StringBuilder report, SimulationStats stats, long setupMillis, long wallMillis,
+                              long simulatedMillis) {
+        appendLine(report, "admission", admissionMode);
+        appendLine(report, "signals", signalMode);
+        appendLine(report, "routing", routeMode);
+        appendLine(report, "grid", gridSize);
+        appendLine(report, "vehicles", stats.getVehicleCount());
+        appendLine(report, "setup_ms", setupMillis);
+        appendLine(report, "wall_ms", wallMillis);
+        appendLine(report, "simulated_ms", simulatedMillis);
+        appendLine(report, "active", stats.getActiveVehicles());
+        appendLine(report, "completed", stats.getCompletedVehicles());
+        appendLine(report, "cancelled", stats.getCancelledVehicles());
+        appendLine(report, "throughput_per_min", format(stats.getThroughputPerMinute()));
+        appendLine(report, "avg_wait_active_s", format(stats.getAverageWaitSeconds()));
+        appendLine(report, "avg_wait_all_s", format(stats.getAverageWaitAllSeconds()));
+        appendLine(report, "congestion_final_pct", stats.getCongestionPercent());
+        appendLine(report, "congestion_mean_pct",
+                format(congestionSamples > 0 ? (double) congestionSum / congestionSamples : 0.0));
+        appendLine(report, "congestion_peak_pct", peakCongestion);
+        appendLine(report, "intersection_admissions", stats.getIntersectionAdmissions());
+        appendLine(report, "intersection_timeouts", stats.getIntersectionTimeouts());
+        appendLine(report, "intersection_wait_avg_ms", format(stats.getIntersectionAverageWaitMillis()));
+        appendLine(report, "intersection_wait_max_ms", stats.getIntersectionMaxWaitMillis());
+        appendLine(report, "intersection_queue_peak", stats.getIntersectionPeakQueue());
+        for (Vehicle.VehicleType type : Vehicle.VehicleType.values()) {
+            appendLine(report, "active_" + type.name().toLowerCase(Locale.ROOT), stats.getActiveCount(type));
+        }
+    }
+
+    private void appendMetrics(StringBuilder report, MetricsSnapshot snapshot) {
+        appendLatency(report, "admission_wait", snapshot.getAdmissionWait());
+        appendLatency(report, "red_light_wait", snapshot.getRedLightWait());
+        appendLatency(report, "road_traversal", snapshot.getRoadTraversal());
+        appendLine(report, "retries", snapshot.getRetries());
+        appendLine(report, "retries_exhausted", snapshot.getRetriesExhausted());
+    }
+
+    private static void appendLatency(StringBuilder report, String name, LatencyHistogram.Snapshot histogram) {
+        appendLine(report, name + "_count", histogram.getCount());
+        appendLine(report, name + "_p50_ms", histogram.getP50Millis());
+        appendLine(report, name + "_p99_ms", histogram.getP99Millis());
+        appendLine(report, name + "_max_ms", histogram.getMaxMillis());
+    }
+
+    private long runFixedStep(CityMap cityMap, SimulationEngine engine) throws IOException {
+        long simulatedMillis = runSliced(cityMap, engine::getSimulationTime, engine::runFor, engine::isFinished);
+        if (engine instanceof ParallelSimulationEngine parallelEngine) {
+            parallelEngine.close();
+        }
+        return simulatedMillis;
+    }
+
+    private long runDiscreteEvent(CityMap cityMap) throws IOException {
+        DiscreteEventSimulation simulation = cityMap.getDiscreteEventSimulation();
+        return runSliced(cityMap, simulation::getSimulationTime, simulation::runFor, simulation::isFinished);
+    }
+
+    // Thread modes run on the wall clock, so simulated time is elapsed time
+    private long runThreads(CityMap cityMap) throws IOException {
+        cityMap.startSimulation();
+        return runSliced(cityMap, System::currentTimeMillis, millis -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> Thread.currentThread().isInterrupted() || allFinished(cityMap));
+    }
+
+    // Runs for the duration in slices, sampling congestion every SAMPLE_INTERVAL and writing the
+    // journal every journal interval; returns the simulated time that passed
+    private long runSliced(CityMap cityMap, LongSupplier time, LongConsumer runFor, BooleanSupplier finished)
+            throws IOException {
+        long start = time.getAsLong();
+        long nextSample = SAMPLE_INTERVAL;
+        long nextJournal = journalIntervalMillis;
+        if (journal != null) {
+            journal.record();
+        }
+        long elapsed = 0;
+        while (elapsed < durationMillis && !finished.getAsBoolean()) {
+            long until = journal != null ? Math.min(nextSample, nextJournal) : nextSample;
+            runFor.accept(Math.max(1, Math.min(until, durationMillis) - elapsed));
+            elapsed = time.getAsLong() - start;
+            boolean done = elapsed >= durationMillis || finished.getAsBoolean();
+            if (journal != null && (elapsed >= nextJournal || done)) {
+                journal.record();
+                nextJournal = (elapsed / journalIntervalMillis + 1) * journalIntervalMillis;
+            }
+            if (elapsed >= nextSample || done) {
+                sampleCongestion(cityMap);
+                nextSample = (elapsed / SAMPLE_INTERVAL + 1) * SAMPLE_INTERVAL;
+            }
+        }
+        return time.getAsLong() - start;
+    }
+
+    private static boolean allFinished(CityMap cityMap) {
+        for (Vehicle vehicle : cityMap.getVehicles()) {
+            if (!vehicle.isFinished()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sampleCongestion(CityMap cityMap) {
+        recordCongestion(SimulationStats.calculateTotalCongestion(cityMap));
+    }
+
+    private void recordCongestion(int congestion) {
+        congestionSamples++;
+        congestionSum += congestion;
+        peakCongestion = Math.max(peakCongestion, congestion);
+    }
+
+    private static void appendLine(StringBuilder report, String key, Object value) {
+        report.append(key).append('=').append(value).append(System.lineSeparator());
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Runs every worker on a thread of this JVM. Messages are still serialized, so this exercises the
+// same protocol as the socket transport without processes or ports.
+public class InProcessTransport implements Transport {
+    private final List<Thread> workers = new ArrayList<>();
+
+    private static final class QueueChannel implements Channel {
+        private final BlockingQueue<byte[]> in;
+        private final BlockingQueue<byte[]> out;
+
+        QueueChannel(BlockingQueue<byte[]> in, BlockingQueue<byte[]> out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public void send(byte[] message) {
+            out.add(message);
+        }
+
+        @Override
+        public byte[] receive() throws IOException {
+            try {
+                return in.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a message");
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Override
+    public List<Channel> open(int workerCount) {
+        List<Channel> channels = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            BlockingQueue<byte[]> toWorker = new LinkedBlockingQueue<>();
+            BlockingQueue<byte[]> toCoordinator = new LinkedBlockingQueue<>();
+            Channel workerEnd = new QueueChannel(toWorker, toCoordinator);
+            Thread worker = new Thread(() -> DistributedWorker.serve(workerEnd), "distributed-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+            channels.add(new QueueChannel(toCoordinator, toWorker));
+        }
+        return channels;
+    }
+
+    @Override
+    public void close() {
+        for (Thread worker : workers) {
+            try {
+                worker.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workers.clear();
+    }
+}
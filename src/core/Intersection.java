@@ -1,26 +1,94 @@
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 public class Intersection {
+    private final int index;
     private final String id;
     private final Semaphore access;
     private final ConcurrentHashMap<String, Long> waitingVehicles;
+    private final SimulationClock clock;
+    private final AdmissionMode admissionMode;
+    // FIFO modu: sıradaki araçlar ve adım modlarında araç kimliğine göre kayıtları
+    private final ConcurrentLinkedQueue<Waiter> queue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, Waiter> pendingWaiters = new ConcurrentHashMap<>();
+    private final AtomicInteger queueLength = new AtomicInteger();
+    // İstatistikler
+    private final AtomicInteger peakQueueLength = new AtomicInteger();
+    private final LongAdder admittedCount = new LongAdder();
+    private final LongAdder timedOutCount = new LongAdder();
+    private final LongAdder totalWaitMillis = new LongAdder();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
     private static final long TIMEOUT = 5000; // 5 saniye timeout
     private static final long WAIT_TIME = 100; // 100ms bekleme süresi
 
+    public enum Admission { ENTERED, WAITING, TIMED_OUT }
+
+    public enum AdmissionMode {
+        OLDEST_FIRST, // izin 100ms aralıklarla yoklanır, en uzun bekleyene öncelik verilir
+        FIFO          // geliş sırasına göre kuyruk, çıkan araç izni doğrudan sıradakine devreder
+    }
+
+    // Kuyruktaki bir araç; durum yalnızca WAITING'den GRANTED ya da CANCELLED'a bir kez geçer
+    private static final class Waiter {
+        static final int WAITING = 0, GRANTED = 1, CANCELLED = 2;
+
+        final Thread thread; // adım modlarında null
+        final long since;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Waiter(Thread thread, long since) {
+            this.thread = thread;
+            this.since = since;
+        }
+
+        boolean grant() {
+            return state.compareAndSet(WAITING, GRANTED);
+        }
+
+        boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+
+        boolean isGranted() {
+            return state.get() == GRANTED;
+        }
+    }
+
     public Intersection(String id) {
+        this(-1, id, SimulationClock.SYSTEM);
+    }
+
+    public Intersection(int index, String id, SimulationClock clock) {
+        this(index, id, clock, AdmissionMode.OLDEST_FIRST);
+    }
+
+    // index: CityMap.getIntersections() içindeki sırası
+    public Intersection(int index, String id, SimulationClock clock, AdmissionMode admissionMode) {
+        this.index = index;
         this.id = id;
+        this.clock = clock;
+        this.admissionMode = admissionMode;
         this.access = new Semaphore(1);  // aynı anda sadece 1 araç girebilir
         this.waitingVehicles = new ConcurrentHashMap<>();
     }
 
     public boolean enter(String vehicleId) {
+        if (admissionMode == AdmissionMode.FIFO) {
+            return enterFifo(vehicleId);
+        }
         try {
-            System.out.println("Vehicle " + vehicleId + " is waiting to enter intersection " + id);
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_WAITING, vehicleId, id);
             
             // Aracın bekleme süresini kaydet
-            waitingVehicles.put(vehicleId, System.currentTimeMillis());
+            long since = clock.currentTimeMillis();
+            waitingVehicles.put(vehicleId, since);
+            recordQueued(waitingVehicles.size());
             
             // Deadlock önleme: Timeout ile birlikte izin almaya çalış
             boolean acquired = false;
@@ -28,11 +96,12 @@ public class Intersection {
                 acquired = access.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
                 if (!acquired) {
                     // Timeout kontrolü
-                    long waitTime = System.currentTimeMillis() - waitingVehicles.get(vehicleId);
+                    long waitTime = clock.currentTimeMillis() - waitingVehicles.get(vehicleId);
                     if (waitTime > TIMEOUT) {
                         // Timeout oldu, aracı geri çek
                         waitingVehicles.remove(vehicleId);
-                        System.out.println("Vehicle " + vehicleId + " timeout at intersection " + id + ", backing off");
+                        EventLog.log(clock, EventLog.Kind.INTERSECTION_TIMEOUT, vehicleId, id);
+                        timedOutCount.increment();
                         return false;
                     }
                     
@@ -47,7 +116,8 @@ public class Intersection {
             
             // Başarılı giriş
             waitingVehicles.remove(vehicleId);
-            System.out.println("Vehicle " + vehicleId + " entered intersection " + id);
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_ENTERED, vehicleId, id);
+            recordAdmission(clock.currentTimeMillis() - since);
             return true;
             
         } catch (InterruptedException e) {
@@ -57,6 +127,162 @@ public class Intersection {
         }
     }
 
+    // Bloklamayan giriş denemesi (SimulationEngine için), now simülasyon zamanı (ms)
+    public Admission tryEnter(String vehicleId, long now) {
+        if (admissionMode == AdmissionMode.FIFO) {
+            return tryEnterFifo(vehicleId, now);
+        }
+        Long waitingSince = waitingVehicles.putIfAbsent(vehicleId, now);
+        if (waitingSince == null) {
+            waitingSince = now;
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_WAITING, vehicleId, id);
+            recordQueued(waitingVehicles.size());
+        }
+        
+        // Sıra en uzun bekleyen araçta
+        if (vehicleId.equals(findOldestWaitingVehicle()) && access.tryAcquire()) {
+            waitingVehicles.remove(vehicleId);
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_ENTERED, vehicleId, id);
+            recordAdmission(now - waitingSince);
+            return Admission.ENTERED;
+        }
+        
+        if (now - waitingSince > TIMEOUT) {
+            waitingVehicles.remove(vehicleId);
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_TIMEOUT, vehicleId, id);
+            timedOutCount.increment();
+            return Admission.TIMED_OUT;
+        }
+        return Admission.WAITING;
+    }
+
+    public void cancelWaiting(String vehicleId) {
+        if (admissionMode == AdmissionMode.FIFO) {
+            Waiter waiter = pendingWaiters.remove(vehicleId);
+            if (waiter != null && !waiter.cancel()) {
+                // İzin çoktan devredilmiş, kullanılmadan geri ver
+                release();
+            } else if (waiter != null) {
+                queueLength.decrementAndGet();
+            }
+            return;
+        }
+        waitingVehicles.remove(vehicleId);
+    }
+
+    // FIFO girişi: kuyruğa gir, izin devredilene kadar park et. Yoklama yok; çıkan araç sıradakini uyandırır.
+    private boolean enterFifo(String vehicleId) {
+        EventLog.log(clock, EventLog.Kind.INTERSECTION_WAITING, vehicleId, id);
+        long since = clock.currentTimeMillis();
+        if (queue.isEmpty() && access.tryAcquire()) {
+            // Bekleyen yok, kuyruğa girmeden geç
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_ENTERED, vehicleId, id);
+            recordAdmission(0);
+            return true;
+        }
+        Waiter waiter = new Waiter(Thread.currentThread(), since);
+        enqueue(waiter);
+
+        while (!waiter.isGranted()) {
+            long waited = clock.currentTimeMillis() - since;
+            if (Thread.currentThread().isInterrupted()) {
+                if (!waiter.cancel()) {
+                    release(); // tam kesilirken izin geldi
+                } else {
+                    queueLength.decrementAndGet();
+                }
+                return false;
+            }
+            if (waited > TIMEOUT) {
+                if (waiter.cancel()) {
+                    queueLength.decrementAndGet();
+                    EventLog.log(clock, EventLog.Kind.INTERSECTION_TIMEOUT, vehicleId, id);
+                    timedOutCount.increment();
+                    return false;
+                }
+                break; // iptalden hemen önce izin geldi
+            }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(TIMEOUT - waited + 1));
+        }
+
+        EventLog.log(clock, EventLog.Kind.INTERSECTION_ENTERED, vehicleId, id);
+        recordAdmission(clock.currentTimeMillis() - since);
+        return true;
+    }
+
+    private Admission tryEnterFifo(String vehicleId, long now) {
+        Waiter waiter = pendingWaiters.get(vehicleId);
+        if (waiter == null && queue.isEmpty() && access.tryAcquire()) {
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_WAITING, vehicleId, id);
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_ENTERED, vehicleId, id);
+            recordAdmission(0);
+            return Admission.ENTERED;
+        }
+        if (waiter == null) {
+            waiter = new Waiter(null, now);
+            pendingWaiters.put(vehicleId, waiter);
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_WAITING, vehicleId, id);
+            enqueue(waiter);
+        }
+
+        if (now - waiter.since > TIMEOUT && waiter.cancel()) {
+            pendingWaiters.remove(vehicleId);
+            queueLength.decrementAndGet();
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_TIMEOUT, vehicleId, id);
+            timedOutCount.increment();
+            return Admission.TIMED_OUT;
+        }
+        if (waiter.isGranted()) {
+            pendingWaiters.remove(vehicleId);
+            EventLog.log(clock, EventLog.Kind.INTERSECTION_ENTERED, vehicleId, id);
+            recordAdmission(now - waiter.since);
+            return Admission.ENTERED;
+        }
+        return Admission.WAITING;
+    }
+
+    private void enqueue(Waiter waiter) {
+        queue.add(waiter);
+        recordQueued(queueLength.incrementAndGet());
+        handOff();
+    }
+
+    // İzin boştaysa kuyruğun başındaki araca devret. Kuyruğa giren de izni bırakan da çağırır,
+    // böylece izin boşken bekleyen araç kalmaz.
+    private void handOff() {
+        while (!queue.isEmpty() && access.tryAcquire()) {
+            Waiter next;
+            while ((next = queue.poll()) != null) {
+                if (next.grant()) {
+                    queueLength.decrementAndGet();
+                    if (next.thread != null) {
+                        LockSupport.unpark(next.thread);
+                    }
+                    return;
+                }
+            }
+            // Kuyrukta sadece iptal edilmiş araçlar vardı
+            access.release();
+        }
+    }
+
+    private void release() {
+        access.release();
+        if (admissionMode == AdmissionMode.FIFO) {
+            handOff();
+        }
+    }
+
+    private void recordQueued(int length) {
+        peakQueueLength.accumulateAndGet(length, Math::max);
+    }
+
+    private void recordAdmission(long waitMillis) {
+        admittedCount.increment();
+        totalWaitMillis.add(waitMillis);
+        maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+    }
+
     private String findOldestWaitingVehicle() {
         long oldestTime = Long.MAX_VALUE;
         String oldestVehicle = null;
@@ -72,8 +298,47 @@ public class Intersection {
     }
 
     public void exit(String vehicleId) {
-        System.out.println("Vehicle " + vehicleId + " exited intersection " + id);
-        access.release();  // çıkışta izin serbest bırakılır
+        EventLog.log(clock, EventLog.Kind.INTERSECTION_EXITED, vehicleId, id);
+        release();  // çıkışta izin serbest bırakılır (FIFO modunda sıradakine devredilir)
+    }
+
+    public AdmissionMode getAdmissionMode() {
+        return admissionMode;
+    }
+
+    // Şu an girmeyi bekleyen araç sayısı
+    public int getQueueLength() {
+        return admissionMode == AdmissionMode.FIFO ? queueLength.get() : waitingVehicles.size();
+    }
+
+    public int getPeakQueueLength() {
+        return peakQueueLength.get();
+    }
+
+    public long getAdmittedCount() {
+        return admittedCount.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.sum();
+    }
+
+    // Giriş yapan araçların ortalama bekleme süresi (ms)
+    public double getAverageWaitMillis() {
+        long admitted = admittedCount.sum();
+        return admitted > 0 ? (double) totalWaitMillis.sum() / admitted : 0.0;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    public long getTimeoutMillis() {
+        return TIMEOUT;
+    }
+
+    public int getIndex() {
+        return index;
     }
 
     public String getId() {
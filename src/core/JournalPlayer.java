@@ -0,0 +1,325 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Replays a journal written by JournalRecorder as CityFrames, at any speed and from any point,
+// without vehicles or simulation threads. The file is memory-mapped a window at a time. Opening
+// reads it through once and keeps a copy of the state every so many bytes; a seek starts from
+// the nearest earlier copy, so jumping anywhere costs about the same as playing a short stretch.
+public class JournalPlayer implements FrameSource {
+    private static final long WINDOW_SIZE = 256L << 20;
+    private static final long MIN_CHECKPOINT_SPACING = 4L << 20;
+    private static final int CHECKPOINT_SPACING_FACTOR = 8; // journal bytes per byte of frame kept
+    private static final Vehicle.VehicleType[] TYPES = Vehicle.VehicleType.values();
+    private static final TrafficLight.State[] STATES = TrafficLight.State.values();
+
+    private record Checkpoint(long position, CityFrame frame) {
+    }
+
+    private final FileChannel channel;
+    private final int gridSize;
+    private final int roadCount;
+    private final int intersectionCount;
+    private final long seed;
+    private final long dataStart;
+    private final long dataEnd; // end of the last whole record
+    private final long startTime;
+    private final long endTime;
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private long[] checkpointTimes = new long[16];
+
+    // Reader side: the frame holds every record before position
+    private final CityFrame frame = new CityFrame();
+    private long position;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    // Playback clock
+    private long anchorTime; // journal time at anchorNanos
+    private long anchorNanos;
+    private double speed = 1.0;
+    private boolean playing = false;
+
+    public JournalPlayer(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            map(0, size);
+            if (size < 28 || window.getInt(0) != JournalRecorder.MAGIC) {
+                throw new IOException("Not a traffic journal: " + file);
+            }
+            if (window.getInt(4) != JournalRecorder.VERSION) {
+                throw new IOException("Unsupported journal version " + window.getInt(4) + ": " + file);
+            }
+            gridSize = window.getInt(8);
+            roadCount = window.getInt(12);
+            intersectionCount = window.getInt(16);
+            seed = window.getLong(20);
+            dataStart = 28 + (long) roadCount * Integer.BYTES;
+            if (dataStart > size) {
+                throw new IOException("Truncated journal header: " + file);
+            }
+            frame.setRoadCount(roadCount);
+            for (int road = 0; road < roadCount; road++) {
+                frame.roadCapacity[road] = window.getInt(28 + road * Integer.BYTES);
+            }
+            Arrays.fill(frame.lightState, TrafficLight.State.RED);
+            Arrays.fill(frame.lightBrightness, 1.0);
+
+            // One pass over everything: find the end and the time span, and keep checkpoints
+            dataEnd = scan(size);
+            startTime = dataEnd > dataStart ? firstTime() : 0;
+            endTime = frame.time;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        anchorTime = startTime;
+        anchorNanos = System.nanoTime();
+    }
+
+    private long scan(long size) {
+        position = dataStart;
+        addCheckpoint(Long.MIN_VALUE);
+        long lastCheckpoint = position;
+        while (true) {
+            int length = recordLength(size);
+            if (length == 0) {
+                return position;
+            }
+            if (readTag() == JournalRecorder.TIME) {
+                long spacing = Math.max(MIN_CHECKPOINT_SPACING, CHECKPOINT_SPACING_FACTOR * frameBytes());
+                if (position - lastCheckpoint >= spacing) {
+                    addCheckpoint(frame.time);
+                    lastCheckpoint = position;
+                }
+            }
+            apply();
+            position += length;
+        }
+    }
+
+    // Every journal starts with a TIME record
+    private long firstTime() {
+        map(dataStart, dataEnd);
+        return window.getLong((int) (dataStart - windowStart) + 1);
+    }
+
+    private void addCheckpoint(long time) {
+        CityFrame copy = new CityFrame();
+        copy.copyFrom(frame);
+        if (checkpoints.size() == checkpointTimes.length) {
+            checkpointTimes = Arrays.copyOf(checkpointTimes, checkpointTimes.length * 2);
+        }
+        checkpointTimes[checkpoints.size()] = time;
+        checkpoints.add(new Checkpoint(position, copy));
+    }
+
+    // Rough heap size of a frame copy
+    private long frameBytes() {
+        return frame.vehicleCount * 40L + roadCount * 32L;
+    }
+
+    // Reader side: the frame at the playback clock
+    @Override
+    public CityFrame latest() {
+        long target = currentTime();
+        int index = Arrays.binarySearch(checkpointTimes, 0, checkpoints.size(), target);
+        Checkpoint checkpoint = checkpoints.get(index >= 0 ? index : -index - 2);
+        // Going back, or far enough forward that a checkpoint lies in between
+        if (target < frame.time || checkpoint.position() > position) {
+            frame.copyFrom(checkpoint.frame());
+            position = checkpoint.position();
+        }
+        advanceTo(target);
+        frame.totalVehicles = frame.vehicleCount;
+        return frame;
+    }
+
+    // Applies every record up to the first TIME later than time
+    private void advanceTo(long time) {
+        while (position < dataEnd) {
+            map(position, dataEnd);
+            int offset = (int) (position - windowStart);
+            byte tag = window.get(offset);
+            if (tag == JournalRecorder.TIME && window.getLong(offset + 1) > time) {
+                return;
+            }
+            int length = recordLength(dataEnd);
+            apply();
+            position += length;
+        }
+    }
+
+    // Length of the record at position, or 0 if none starts there or it is cut off
+    private int recordLength(long end) {
+        if (position >= end) {
+            return 0;
+        }
+        map(position, end);
+        int length = switch (readTag()) {
+            case JournalRecorder.TIME -> 9;
+            case JournalRecorder.VEHICLE -> 10;
+            case JournalRecorder.ROAD_ENTER, JournalRecorder.ROAD_EXIT, JournalRecorder.INTERSECTION_ENTER,
+                 JournalRecorder.INTERSECTION_EXIT, JournalRecorder.ROAD_LOAD -> 9;
+            case JournalRecorder.PROGRESS -> 7;
+            case JournalRecorder.LIGHT -> 8;
+            case JournalRecorder.FIGURES -> 13 + TYPES.length * Integer.BYTES;
+            default -> 0; // garbage after a crash; treat as the end
+        };
+        return position + length <= end ? length : 0;
+    }
+
+    private byte readTag() {
+        return window.get((int) (position - windowStart));
+    }
+
+    // Applies the record at position, which recordLength has checked and mapped
+    private void apply() {
+        int at = (int) (position - windowStart) + 1;
+        switch (window.get(at - 1)) {
+            case JournalRecorder.TIME -> frame.time = window.getLong(at);
+            case JournalRecorder.VEHICLE -> {
+                int slot = window.getInt(at);
+                frame.ensureVehicleCapacity(slot + 1);
+                frame.vehicleCount = Math.max(frame.vehicleCount, slot + 1);
+                frame.vehicleType[slot] = TYPES[window.get(at + 4)];
+                frame.vehicleSpeed[slot] = window.getFloat(at + 5);
+                frame.vehicleRoad[slot] = -1;
+                frame.vehicleIntersection[slot] = -1;
+                frame.vehicleProgress[slot] = 0.0;
+            }
+            case JournalRecorder.ROAD_ENTER -> frame.vehicleRoad[window.getInt(at)] = window.getInt(at + 4);
+            case JournalRecorder.ROAD_EXIT -> {
+                int slot = window.getInt(at);
+                if (frame.vehicleRoad[slot] == window.getInt(at + 4)) {
+                    frame.vehicleRoad[slot] = -1;
+                }
+            }
+            case JournalRecorder.INTERSECTION_ENTER ->
+                    frame.vehicleIntersection[window.getInt(at)] = window.getInt(at + 4);
+            case JournalRecorder.INTERSECTION_EXIT -> {
+                int slot = window.getInt(at);
+                if (frame.vehicleIntersection[slot] == window.getInt(at + 4)) {
+                    frame.vehicleIntersection[slot] = -1;
+                }
+            }
+            case JournalRecorder.PROGRESS ->
+                    frame.vehicleProgress[window.getInt(at)] = window.getChar(at + 4) / JournalRecorder.PROGRESS_SCALE;
+            case JournalRecorder.ROAD_LOAD -> frame.roadVehicles[window.getInt(at)] = window.getInt(at + 4);
+            case JournalRecorder.LIGHT -> {
+                int light = window.getInt(at);
+                frame.lightState[light] = STATES[window.get(at + 4)];
+                frame.lightEmergency[light] = window.get(at + 5) != 0;
+                frame.lightBrightness[light] = window.get(at + 6) / 100.0;
+            }
+            case JournalRecorder.FIGURES -> {
+                frame.activeVehicles = window.getInt(at);
+                at += Integer.BYTES;
+                for (int type = 0; type < TYPES.length; type++, at += Integer.BYTES) {
+                    frame.activeByType[type] = window.getInt(at);
+                }
+                frame.averageWaitSeconds = window.getFloat(at);
+                frame.congestionPercent = window.getInt(at + 4);
+            }
+            default -> { }
+        }
+    }
+
+    // Makes sure the window covers from..min(from + 64, end), mapping a new one if needed
+    private void map(long from, long end) {
+        long need = Math.min(from + 64, end);
+        if (window != null && from >= windowStart && need <= windowStart + window.limit()) {
+            return;
+        }
+        try {
+            long size = channel.size();
+            windowStart = from;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(WINDOW_SIZE, size - from));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map journal at " + from, e);
+        }
+    }
+
+    // Journal time the playback is at; stops at the end
+    public synchronized long currentTime() {
+        if (!playing) {
+            return anchorTime;
+        }
+        long time = anchorTime + (long) ((System.nanoTime() - anchorNanos) / 1_000_000.0 * speed);
+        if (time >= endTime) {
+            anchorTime = endTime;
+            playing = false;
+            return endTime;
+        }
+        return time;
+    }
+
+    // Playing from the end starts over
+    public synchronized void setPlaying(boolean value) {
+        long time = currentTime();
+        anchorTime = value && time >= endTime ? startTime : time;
+        anchorNanos = System.nanoTime();
+        playing = value;
+    }
+
+    public synchronized boolean isPlaying() {
+        currentTime();
+        return playing;
+    }
+
+    // Journal milliseconds per wall-clock millisecond
+    public synchronized void setSpeed(double value) {
+        anchorTime = currentTime();
+        anchorNanos = System.nanoTime();
+        speed = value;
+    }
+
+    public synchronized double getSpeed() {
+        return speed;
+    }
+
+    public synchronized void seek(long time) {
+        anchorTime = Math.max(startTime, Math.min(endTime, time));
+        anchorNanos = System.nanoTime();
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    public int getRoadCount() {
+        return roadCount;
+    }
+
+    public int getIntersectionCount() {
+        return intersectionCount;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // Closes the file; the frame last returned stays readable
+    @Override
+    public void stop() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+}
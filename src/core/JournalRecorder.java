@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+// Writes a run of a CityMap to a compact binary journal that JournalPlayer replays without a
+// simulation. Each record() captures a CityFrame and appends only what changed since the last
+// one: vehicles joining, road and intersection enter/exit, progress samples, road loads, light
+// changes and the stats-bar figures, behind a TIME record. Records collect in a large direct
+// buffer that is written out sequentially whenever it fills. One thread records at a time.
+//
+// Layout, big-endian: MAGIC, VERSION, grid size, road count, intersection count, seed, the road
+// capacities, then records of a one-byte tag and the fixed fields listed below.
+public class JournalRecorder implements AutoCloseable {
+    static final int MAGIC = 0x54534A31; // "TSJ1"
+    static final int VERSION = 1;
+
+    static final byte TIME = 1;               // long time
+    static final byte VEHICLE = 2;            // int slot, byte type, float speed
+    static final byte ROAD_ENTER = 3;         // int slot, int road
+    static final byte ROAD_EXIT = 4;          // int slot, int road
+    static final byte INTERSECTION_ENTER = 5; // int slot, int intersection
+    static final byte INTERSECTION_EXIT = 6;  // int slot, int intersection
+    static final byte PROGRESS = 7;           // int slot, char progress in PROGRESS_SCALE steps
+    static final byte ROAD_LOAD = 8;          // int road, int vehicles
+    static final byte LIGHT = 9;              // int light, byte state, byte emergency, byte brightness %
+    static final byte FIGURES = 10;           // int active, int per vehicle type, float wait s, int congestion %
+
+    static final double PROGRESS_SCALE = 65535.0;
+    private static final int BUFFER_SIZE = 4 << 20;
+    private static final int MAX_RECORD_SIZE = 64;
+
+    private final CityMap cityMap;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CityFrame captured = new CityFrame();
+    private long flushedBytes = 0;
+
+    // The state the journal describes so far, to compare the next frame with
+    private int vehicles = 0;
+    private int[] vehicleRoad = new int[0];
+    private int[] vehicleIntersection = new int[0];
+    private char[] vehicleProgress = new char[0];
+    private final int[] roadLoad;
+    private final TrafficLight.State[] lightState;
+    private final boolean[] lightEmergency;
+    private final byte[] lightBrightness;
+    private final CityFrame figures = new CityFrame();
+
+    // Creates or overwrites the file; call after the city is set up
+    public JournalRecorder(CityMap cityMap, Path file) throws IOException {
+        this.cityMap = cityMap;
+        List<Road> roads = cityMap.getRoads();
+        roadLoad = new int[roads.size()];
+        lightState = new TrafficLight.State[roads.size()];
+        lightEmergency = new boolean[roads.size()];
+        lightBrightness = new byte[roads.size()];
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(cityMap.getGridSize()).putInt(roads.size())
+                .putInt(cityMap.getIntersections().size()).putLong(cityMap.getSeed());
+        for (Road road : roads) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(road.getCapacity());
+        }
+    }
+
+    // Captures the city and appends what changed
+    public void record() throws IOException {
+        captured.capture(cityMap);
+        write(captured);
+    }
+
+    // Appends the changes between the last written frame and this one, a frame of the same city
+    void write(CityFrame frame) throws IOException {
+        next(TIME).putLong(frame.time);
+
+        int count = frame.vehicleCount;
+        if (count > vehicles) {
+            if (vehicleRoad.length < count) {
+                int capacity = Math.max(count, vehicleRoad.length * 2);
+                vehicleRoad = Arrays.copyOf(vehicleRoad, capacity);
+                vehicleIntersection = Arrays.copyOf(vehicleIntersection, capacity);
+                vehicleProgress = Arrays.copyOf(vehicleProgress, capacity);
+            }
+            for (int slot = vehicles; slot < count; slot++) {
+                next(VEHICLE).putInt(slot).put((byte) frame.vehicleType[slot].ordinal())
+                        .putFloat((float) frame.vehicleSpeed[slot]);
+                vehicleRoad[slot] = -1;
+                vehicleIntersection[slot] = -1;
+                vehicleProgress[slot] = 0;
+            }
+            vehicles = count;
+        }
+
+        for (int slot = 0; slot < count; slot++) {
+            int shownRoad = frame.vehicleRoad[slot];
+            if (shownRoad != vehicleRoad[slot]) {
+                if (vehicleRoad[slot] >= 0) {
+                    next(ROAD_EXIT).putInt(slot).putInt(vehicleRoad[slot]);
+                }
+                if (shownRoad >= 0) {
+                    next(ROAD_ENTER).putInt(slot).putInt(shownRoad);
+                }
+                vehicleRoad[slot] = shownRoad;
+            }
+            int crossing = frame.vehicleIntersection[slot];
+            if (crossing != vehicleIntersection[slot]) {
+                if (vehicleIntersection[slot] >= 0) {
+                    next(INTERSECTION_EXIT).putInt(slot).putInt(vehicleIntersection[slot]);
+                }
+                if (crossing >= 0) {
+                    next(INTERSECTION_ENTER).putInt(slot).putInt(crossing);
+                }
+                vehicleIntersection[slot] = crossing;
+            }
+            double shownProgress = Math.max(0.0, Math.min(1.0, frame.vehicleProgress[slot]));
+            char sample = (char) Math.round(shownProgress * PROGRESS_SCALE);
+            if (sample != vehicleProgress[slot]) {
+                next(PROGRESS).putInt(slot).putChar(sample);
+                vehicleProgress[slot] = sample;
+            }
+        }
+
+        for (int road = 0; road < frame.roadCount; road++) {
+            if (frame.roadVehicles[road] != roadLoad[road]) {
+                next(ROAD_LOAD).putInt(road).putInt(frame.roadVehicles[road]);
+                roadLoad[road] = frame.roadVehicles[road];
+            }
+            byte brightness = (byte) Math.round(frame.lightBrightness[road] * 100);
+            if (frame.lightState[road] != lightState[road] || frame.lightEmergency[road] != lightEmergency[road]
+                    || brightness != lightBrightness[road]) {
+                next(LIGHT).putInt(road).put((byte) frame.lightState[road].ordinal())
+                        .put((byte) (frame.lightEmergency[road] ? 1 : 0)).put(brightness);
+                lightState[road] = frame.lightState[road];
+                lightEmergency[road] = frame.lightEmergency[road];
+                lightBrightness[road] = brightness;
+            }
+        }
+
+        if (!figures.hasSameFigures(frame)) {
+            ByteBuffer out = next(FIGURES).putInt(frame.activeVehicles);
+            for (int typeCount : frame.activeByType) {
+                out.putInt(typeCount);
+            }
+            out.putFloat((float) frame.averageWaitSeconds).putInt(frame.congestionPercent);
+            figures.copyFiguresFrom(frame);
+        }
+    }
+
+    // Bytes recorded so far, buffered ones included
+    public long getSize() {
+        return flushedBytes + buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Starts a record, making room for it first
+    private ByteBuffer next(byte tag) throws IOException {
+        if (buffer.remaining() < MAX_RECORD_SIZE) {
+            flush();
+        }
+        return buffer.put(tag);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushedBytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free histogram of millisecond durations with HDR-style log-linear buckets: values below
+// SUB_BUCKETS get a bucket each, above that every power of two is split into SUB_BUCKETS / 2
+// buckets, so any recorded value is reported within 1/64 of itself. Recording is one array
+// increment and one LongAdder add; nothing is allocated until a snapshot is taken.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SHIFT = SUB_BUCKET_BITS - 1;
+    static final long MAX_VALUE = (1L << 40) - 1; // ~35 years of milliseconds; larger values are clamped
+    static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long millis) {
+        long value = Math.max(0, Math.min(MAX_VALUE, millis));
+        counts.incrementAndGet(bucketIndex(value));
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    // Only while nothing records
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    static int bucketIndex(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - HALF_SHIFT);
+        return (shift << HALF_SHIFT) + (int) (value >>> shift);
+    }
+
+    // Smallest value that lands in a bucket
+    static long bucketLowest(int index) {
+        int shift = Math.max(0, (index >> HALF_SHIFT) - 1);
+        return (long) (index - (shift << HALF_SHIFT)) << shift;
+    }
+
+    static long bucketHighest(int index) {
+        int shift = Math.max(0, (index >> HALF_SHIFT) - 1);
+        return bucketLowest(index) + (1L << shift) - 1;
+    }
+
+    // Counts at one moment. Recording goes on while a snapshot is taken, so count, sum and max may
+    // disagree by the few values recorded meanwhile. The getters double as JMX attributes.
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        // What was recorded after an earlier snapshot of the same histogram; the maximum stays the
+        // overall one, since it cannot be taken apart
+        public Snapshot since(Snapshot earlier) {
+            long[] difference = new long[BUCKET_COUNT];
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                difference[i] = Math.max(0, counts[i] - earlier.counts[i]);
+                total += difference[i];
+            }
+            return new Snapshot(difference, total, Math.max(0, sum - earlier.sum), max);
+        }
+
+        // Highest value at or below which the given percentage (0-100) of the values fall
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketHighest(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return count > 0 ? (double) sum / count : 0.0;
+        }
+
+        public long getMaxMillis() {
+            return max;
+        }
+
+        public long getP50Millis() {
+            return getValueAtPercentile(50);
+        }
+
+        public long getP90Millis() {
+            return getValueAtPercentile(90);
+        }
+
+        public long getP99Millis() {
+            return getValueAtPercentile(99);
+        }
+
+        public long getP999Millis() {
+            return getValueAtPercentile(99.9);
+        }
+    }
+}
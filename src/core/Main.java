@@ -1,5 +1,12 @@
+import java.util.Arrays;
+
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--headless")) {
+            // Batch run without touching the JavaFX toolkit
+            HeadlessRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         TrafficSimulationGUI.main(args);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+import java.util.Locale;
+
+// SimulationMetrics at one moment: cumulative since the city was set up, or, from since(), the
+// change over an interval. Throughput arrays are indexed like CityMap.getRoads() and getIntersections().
+public class MetricsSnapshot {
+    private final long time; // simulation clock
+    private final LatencyHistogram.Snapshot admissionWait;
+    private final LatencyHistogram.Snapshot redLightWait;
+    private final LatencyHistogram.Snapshot roadTraversal;
+    private final long retries;
+    private final long retriesExhausted;
+    private final long intersectionTimeouts;
+    private final long[] roadThroughput;
+    private final long[] intersectionThroughput;
+
+    MetricsSnapshot(long time, LatencyHistogram.Snapshot admissionWait, LatencyHistogram.Snapshot redLightWait,
+                    LatencyHistogram.Snapshot roadTraversal, long retries, long retriesExhausted,
+                    long intersectionTimeouts, long[] roadThroughput, long[] intersectionThroughput) {
+        this.time = time;
+        this.admissionWait = admissionWait;
+        this.redLightWait = redLightWait;
+        this.roadTraversal = roadTraversal;
+        this.retries = retries;
+        this.retriesExhausted = retriesExhausted;
+        this.intersectionTimeouts = intersectionTimeouts;
+        this.roadThroughput = roadThroughput;
+        this.intersectionThroughput = intersectionThroughput;
+    }
+
+    // What happened between an earlier snapshot of the same city and this one
+    public MetricsSnapshot since(MetricsSnapshot earlier) {
+        return new MetricsSnapshot(time, admissionWait.since(earlier.admissionWait),
+                redLightWait.since(earlier.redLightWait), roadTraversal.since(earlier.roadTraversal),
+                retries - earlier.retries, retriesExhausted - earlier.retriesExhausted,
+                intersectionTimeouts - earlier.intersectionTimeouts,
+                difference(roadThroughput, earlier.roadThroughput),
+                difference(intersectionThroughput, earlier.intersectionThroughput));
+    }
+
+    private static long[] difference(long[] later, long[] earlier) {
+        long[] result = later.clone();
+        for (int i = 0; i < Math.min(later.length, earlier.length); i++) {
+            result[i] -= earlier[i];
+        }
+        return result;
+    }
+
+    // One line, for logs
+    public String format() {
+        return String.format(Locale.ROOT,
+                "t=%d admissions=%d admission_wait_p50/p99/max=%d/%d/%d ms red_wait_p50/p99/max=%d/%d/%d ms"
+                        + " traversals=%d traversal_p50/p99/max=%d/%d/%d ms retries=%d exhausted=%d timeouts=%d",
+                time, admissionWait.getCount(), admissionWait.getP50Millis(), admissionWait.getP99Millis(),
+                admissionWait.getMaxMillis(), redLightWait.getP50Millis(), redLightWait.getP99Millis(),
+                redLightWait.getMaxMillis(), roadTraversal.getCount(), roadTraversal.getP50Millis(),
+                roadTraversal.getP99Millis(), roadTraversal.getMaxMillis(), retries, retriesExhausted,
+                intersectionTimeouts);
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    // Vehicle waits from joining an intersection queue to entering it
+    public LatencyHistogram.Snapshot getAdmissionWait() {
+        return admissionWait;
+    }
+
+    // Vehicle waits at a light that was not green
+    public LatencyHistogram.Snapshot getRedLightWait() {
+        return redLightWait;
+    }
+
+    // From entering a road to leaving it past the intersection, completed passes only
+    public LatencyHistogram.Snapshot getRoadTraversal() {
+        return roadTraversal;
+    }
+
+    // Failed attempts to get through a road, and vehicles that gave up after the last one
+    public long getRetries() {
+        return retries;
+    }
+
+    public long getRetriesExhausted() {
+        return retriesExhausted;
+    }
+
+    public long getIntersectionTimeouts() {
+        return intersectionTimeouts;
+    }
+
+    // Completed passes per road
+    public long[] getRoadThroughput() {
+        return roadThroughput;
+    }
+
+    // Admissions per intersection
+    public long[] getIntersectionThroughput() {
+        return intersectionThroughput;
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Fixed-step engine that splits the grid into square tiles of intersections and steps the tiles
+// in parallel on a ForkJoinPool. A road belongs to the tile of the intersection it leads into,
+// together with its light, so a vehicle only ever touches objects of the tile its current road
+// is in. Vehicles that move onto a road of another tile are handed over after every step, in
+// tile order, so each tile keeps a deterministic vehicle order. In PER_LIGHT signal mode the
+// lights share the city's green slots, so those are granted after the parallel phase too, in
+// light order.
+public class ParallelSimulationEngine extends SimulationEngine {
+    public static final int DEFAULT_TILE_SIZE = 4;
+    private static final Comparator<TrafficLight> LIGHT_ORDER = Comparator.comparingInt(TrafficLight::getIndex);
+
+    private final ForkJoinPool pool;
+    private final Tile[] tiles;
+    private final int[] roadTile;
+    private final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    private final List<TrafficLight> waitingForGreen = new ArrayList<>();
+    private long currentStepTime;
+
+    public ParallelSimulationEngine(CityMap cityMap) {
+        this(cityMap, DEFAULT_STEP_MILLIS, DEFAULT_TILE_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    // tileSize: intersections per tile side; parallelism: worker threads of the pool
+    public ParallelSimulationEngine(CityMap cityMap, long stepMillis, int tileSize, int parallelism) {
+        super(cityMap, stepMillis);
+        if (tileSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Tile size and parallelism must be positive");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+
+        int gridSize = cityMap.getGridSize();
+        int tilesPerSide = (gridSize + tileSize - 1) / tileSize;
+        tiles = new Tile[tilesPerSide * tilesPerSide];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new Tile(i);
+        }
+
+        List<Road> roads = cityMap.getRoads();
+        roadTile = new int[roads.size()];
+        for (Road road : roads) {
+            int cell = cityMap.getDownstreamCell(road);
+            int row = cell / gridSize / tileSize;
+            int column = cell % gridSize / tileSize;
+            roadTile[road.getIndex()] = row * tilesPerSide + column;
+        }
+
+        if (cityMap.getSignalMode() == CityMap.SignalMode.CONTROLLER) {
+            // One controller per tile, so tiles never share a schedule
+            for (List<TrafficLight> group : cityMap.getSignalGroups()) {
+                tiles[tileOf(group.get(0))].signals().addGroup(group);
+            }
+        } else {
+            for (TrafficLight light : cityMap.getLights()) {
+                tiles[tileOf(light)].lights.add(light);
+            }
+        }
+
+        VehicleStore store = cityMap.getVehicleStore();
+        for (int slot = 0; slot < store.size(); slot++) {
+            if (!store.isFinished(slot)) {
+                tiles[ownerTile(store, slot)].add(slot);
+            }
+        }
+        for (Tile tile : tiles) {
+            tasks.add(ForkJoinTask.adapt(tile));
+        }
+    }
+
+    // Tile of the road on the vehicle's current route leg: its road, light and intersection are all there
+    private int ownerTile(VehicleStore store, int slot) {
+        int road = store.getLegRoadIndex(slot);
+        return roadTile[road >= 0 ? road : store.getRoadIndex(slot)];
+    }
+
+    private int tileOf(TrafficLight light) {
+        return roadTile[light.getIndex()];
+    }
+
+    private final class Tile implements Runnable {
+        final int index;
+        final List<TrafficLight> lights = new ArrayList<>();
+        final List<TrafficLight> waitingForGreen = new ArrayList<>();
+        SignalController signals;
+        int[] vehicles = new int[16];
+        int vehicleCount = 0;
+        int[] outgoing = new int[16];
+        int outgoingCount = 0;
+        int unfinished = 0;
+
+        Tile(int index) {
+            this.index = index;
+        }
+
+        SignalController signals() {
+            if (signals == null) {
+                signals = new SignalController(cityMap.getClock());
+            }
+            return signals;
+        }
+
+        void add(int slot) {
+            if (vehicleCount == vehicles.length) {
+                vehicles = Arrays.copyOf(vehicles, vehicleCount * 2);
+            }
+            vehicles[vehicleCount++] = slot;
+        }
+
+        @Override
+        public void run() {
+            long now = currentStepTime;
+            if (signals != null) {
+                signals.step(now);
+            }
+            for (TrafficLight light : lights) {
+                light.step(now, true);
+                if (light.isWaitingForGreenSlot()) {
+                    waitingForGreen.add(light);
+                }
+            }
+
+            List<Vehicle> all = cityMap.getVehicles();
+            VehicleStore store = cityMap.getVehicleStore();
+            int kept = 0;
+            outgoingCount = 0;
+            for (int i = 0; i < vehicleCount; i++) {
+                int slot = vehicles[i];
+                all.get(slot).step(now);
+                if (store.isFinished(slot)) {
+                    continue;
+                }
+                if (ownerTile(store, slot) == index) {
+                    vehicles[kept++] = slot;
+                } else {
+                    // Moved onto another tile's road; handed over after the parallel phase
+                    if (outgoingCount == outgoing.length) {
+                        outgoing = Arrays.copyOf(outgoing, outgoingCount * 2);
+                    }
+                    outgoing[outgoingCount++] = slot;
+                }
+            }
+            vehicleCount = kept;
+            unfinished = kept + outgoingCount;
+        }
+    }
+
+    @Override
+    protected int stepAll(long now) {
+        currentStepTime = now;
+        for (ForkJoinTask<?> task : tasks) {
+            task.reinitialize();
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        // Handoff phase, single-threaded and in tile order
+        VehicleStore store = cityMap.getVehicleStore();
+        int unfinished = 0;
+        for (Tile tile : tiles) {
+            waitingForGreen.addAll(tile.waitingForGreen);
+            tile.waitingForGreen.clear();
+            unfinished += tile.unfinished;
+            for (int i = 0; i < tile.outgoingCount; i++) {
+                int slot = tile.outgoing[i];
+                tiles[ownerTile(store, slot)].add(slot);
+            }
+            tile.outgoingCount = 0;
+        }
+        if (!waitingForGreen.isEmpty()) {
+            waitingForGreen.sort(LIGHT_ORDER);
+            for (TrafficLight light : waitingForGreen) {
+                light.grantGreenSlot(now);
+            }
+            waitingForGreen.clear();
+        }
+        return unfinished;
+    }
+
+    // Shuts the worker pool down; the engine cannot step afterwards
+    public void close() {
+        pool.shutdown();
+    }
+
+    public int getTileCount() {
+        return tiles.length;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+}
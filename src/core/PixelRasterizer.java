@@ -0,0 +1,208 @@
+import java.nio.IntBuffer;
+import javafx.scene.paint.Color;
+
+// Software version of the GUI's dynamic layer: draws a CityFrame into a premultiplied ARGB
+// IntBuffer, so a frame can be rasterized on any thread. Draws what the canvas renderer draws at
+// each DetailLevel except vehicle trails and speed lines, with vehicles at their exact frame
+// positions instead of eased ones. Sprites come from the SpriteAtlas pixels, scaled nearest-pixel.
+public class PixelRasterizer {
+    // Map-to-screen transform and detail level a frame is drawn with
+    public record View(double scale, double offsetX, double offsetY, DetailLevel detail) {
+    }
+
+    private static final int GREEN = SpriteAtlas.toArgbPre(Color.LIMEGREEN);
+    private static final int YELLOW = SpriteAtlas.toArgbPre(Color.GOLD);
+    private static final int RED = SpriteAtlas.toArgbPre(Color.RED);
+
+    private final RoadGeometry geometry;
+    private final SpriteAtlas atlas;
+    private final int[] sprites;
+    private final int spriteStride;
+    private final int width;
+    private final int height;
+    private final int[] blankRow;
+    private final int[] congestionColors; // light, medium, heavy
+    private final int[] densityColors;
+    private IntBuffer target;
+    private View view;
+
+    public PixelRasterizer(RoadGeometry geometry, SpriteAtlas atlas, int width, int height) {
+        this.geometry = geometry;
+        this.atlas = atlas;
+        this.sprites = atlas.getPixels();
+        this.spriteStride = atlas.getWidth();
+        this.width = width;
+        this.height = height;
+        this.blankRow = new int[width];
+        congestionColors = new int[] {
+            SpriteAtlas.toArgbPre(atlas.congestionColor(0.3)),
+            SpriteAtlas.toArgbPre(atlas.congestionColor(0.6)),
+            SpriteAtlas.toArgbPre(atlas.congestionColor(0.9))
+        };
+        densityColors = new int[SpriteAtlas.DENSITY_STEPS + 1];
+        for (int step = 0; step <= SpriteAtlas.DENSITY_STEPS; step++) {
+            densityColors[step] = SpriteAtlas.toArgbPre(SpriteAtlas.densityColor(step, SpriteAtlas.DENSITY_STEPS));
+        }
+    }
+
+    // Clears target (width * height pixels, row by row) and draws the frame into it
+    public void render(CityFrame frame, View view, IntBuffer target) {
+        this.target = target;
+        this.view = view;
+        for (int y = 0; y < height; y++) {
+            target.put(y * width, blankRow);
+        }
+
+        // Visible grid cells, one cell of margin as on the canvas
+        int gridSize = geometry.gridSize;
+        double right = view.offsetX() + width / view.scale();
+        double bottom = view.offsetY() + height / view.scale();
+        int firstColumn = Math.max(0, geometry.cellAt(view.offsetX()) - 1);
+        int lastColumn = Math.min(gridSize - 1, geometry.cellAt(right) + 1);
+        int firstRow = Math.max(0, geometry.cellAt(view.offsetY()) - 1);
+        int lastRow = Math.min(gridSize - 1, geometry.cellAt(bottom) + 1);
+
+        switch (view.detail()) {
+            case VEHICLES -> {
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        int cell = row * gridSize + column;
+                        drawCongestion(frame, cell * 2);
+                        drawCongestion(frame, cell * 2 + 1);
+                    }
+                }
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        int cell = row * gridSize + column;
+                        drawLight(frame, cell * 2);
+                        drawLight(frame, cell * 2 + 1);
+                    }
+                }
+                for (int slot = 0; slot < frame.vehicleCount; slot++) {
+                    int road = frame.vehicleRoad[slot];
+                    if (road >= 0) {
+                        int cell = road / 2;
+                        int row = cell / gridSize;
+                        int column = cell % gridSize;
+                        if (row >= firstRow && row <= lastRow && column >= firstColumn && column <= lastColumn) {
+                            drawVehicle(frame, slot, road);
+                        }
+                    }
+                }
+            }
+            case DENSITY -> {
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        int cell = row * gridSize + column;
+                        for (int road = cell * 2; road <= cell * 2 + 1; road++) {
+                            fillRect(geometry.rectX[road], geometry.rectY[road], geometry.rectWidth[road],
+                                geometry.rectHeight[road], density(frame.roadVehicles[road], frame.roadCapacity[road]));
+                            int light = switch (frame.lightState[road]) {
+                                case GREEN -> GREEN;
+                                case YELLOW -> YELLOW;
+                                default -> RED;
+                            };
+                            fillRect(geometry.lightX[road] - 5, geometry.lightY[road] - 5, 10, 10, light);
+                        }
+                    }
+                }
+            }
+            case HEATMAP -> {
+                double cellPixels = geometry.cellPixels;
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        int cell = row * gridSize + column;
+                        fillRect(column * cellPixels, row * cellPixels, cellPixels, cellPixels,
+                            density(frame.roadVehicles[cell * 2] + frame.roadVehicles[cell * 2 + 1],
+                                frame.roadCapacity[cell * 2] + frame.roadCapacity[cell * 2 + 1]));
+                    }
+                }
+            }
+        }
+    }
+
+    private void drawCongestion(CityFrame frame, int road) {
+        double congestion = (double) frame.roadVehicles[road] / frame.roadCapacity[road];
+        if (congestion > 0.2) {
+            int color = congestion >= 0.8 ? congestionColors[2]
+                : congestion >= 0.5 ? congestionColors[1] : congestionColors[0];
+            fillRect(geometry.rectX[road], geometry.rectY[road], geometry.rectWidth[road],
+                geometry.rectHeight[road], color);
+        }
+    }
+
+    private void drawLight(CityFrame frame, int road) {
+        blit(atlas.lightSourceX(frame.lightState[road], frame.lightBrightness[road], frame.lightEmergency[road]),
+            atlas.lightSourceY(), SpriteAtlas.LIGHT_CELL, geometry.lightX[road], geometry.lightY[road]);
+    }
+
+    private void drawVehicle(CityFrame frame, int slot, int road) {
+        double progress = frame.vehicleProgress[slot];
+        blit(atlas.vehicleSourceX(SpriteAtlas.vehicleColor(slot)),
+            atlas.vehicleSourceY(frame.vehicleType[slot], geometry.horizontal[road]), SpriteAtlas.VEHICLE_CELL, geometry.pointX(road, progress), geometry.pointY(road, progress));
+    }
+
+    private int density(int vehicles, int capacity) {
+        int steps = SpriteAtlas.DENSITY_STEPS;
+        return densityColors[capacity > 0 ? Math.min(steps, vehicles * steps / capacity) : 0];
+    }
+
+    // Fills a map-space rectangle, blending over what is there
+    private void fillRect(double mapX, double mapY, double mapWidth, double mapHeight, int color) {
+        // At least one pixel, so far-out roads do not vanish
+        int x0 = screenX(mapX);
+        int y0 = screenY(mapY);
+        int left = Math.max(0, x0);
+        int top = Math.max(0, y0);
+        int right = Math.min(width, Math.max(x0 + 1, screenX(mapX + mapWidth)));
+        int bottom = Math.min(height, Math.max(y0 + 1, screenY(mapY + mapHeight)));
+        for (int y = top; y < bottom; y++) {
+            int index = y * width + left;
+            for (int x = left; x < right; x++, index++) {
+                target.put(index, blend(color, target.get(index)));
+            }
+        }
+    }
+
+    // Draws a size x size atlas cell centred on a map point, scaled with the view
+    private void blit(int sourceX, int sourceY, int size, double mapX, double mapY) {
+        double scale = view.scale();
+        int drawn = Math.max(1, (int) Math.round(size * scale));
+        int left = screenX(mapX) - drawn / 2;
+        int top = screenY(mapY) - drawn / 2;
+        int fromX = Math.max(0, -left);
+        int fromY = Math.max(0, -top);
+        int toX = Math.min(drawn, width - left);
+        int toY = Math.min(drawn, height - top);
+        for (int y = fromY; y < toY; y++) {
+            int sourceRow = (sourceY + y * size / drawn) * spriteStride + sourceX;
+            int index = (top + y) * width + left + fromX;
+            for (int x = fromX; x < toX; x++, index++) {
+                int color = sprites[sourceRow + x * size / drawn];
+                if (color != 0) {
+                    target.put(index, blend(color, target.get(index)));
+                }
+            }
+        }
+    }
+
+    private int screenX(double mapX) {
+        return (int) Math.floor((mapX - view.offsetX()) * view.scale());
+    }
+
+    private int screenY(double mapY) {
+        return (int) Math.floor((mapY - view.offsetY()) * view.scale());
+    }
+
+    // Premultiplied source-over: source + destination * (1 - source alpha), two channels at a time
+    static int blend(int source, int destination) {
+        int alpha = source >>> 24;
+        if (alpha == 255) {
+            return source;
+        }
+        int inverse = 255 - alpha;
+        int redBlue = ((destination & 0xFF00FF) * inverse >>> 8) & 0xFF00FF;
+        int alphaGreen = ((destination >>> 8) & 0xFF00FF) * inverse & 0xFF00FF00;
+        return source + (redBlue | alphaGreen);
+    }
+}
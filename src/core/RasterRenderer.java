@@ -0,0 +1,140 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+// Runs PixelRasterizer on a background thread, drawing straight into the memory of
+// PixelBuffer-backed images. A finished image reaches the FX thread by reference, without copying.
+// Three targets rotate: one on screen, one that left the screen at the previous swap (the render
+// thread may still be drawing it), and one being rasterized.
+// While running, this is the only reader of the FrameSource.
+public class RasterRenderer {
+    // One image with its pixel memory, and the stats-bar figures of the frame drawn into it
+    public static final class Target {
+        final IntBuffer pixels;
+        final PixelBuffer<IntBuffer> buffer;
+        final WritableImage image;
+        final CityFrame figures = new CityFrame();
+
+        Target(int width, int height) {
+            pixels = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+            buffer = new PixelBuffer<>(width, height, pixels, PixelFormat.getIntArgbPreInstance());
+            image = new WritableImage(buffer);
+        }
+
+        public WritableImage getImage() {
+            return image;
+        }
+
+        public CityFrame getFigures() {
+            return figures;
+        }
+    }
+
+    private final FrameSource snapshots;
+    private final PixelRasterizer rasterizer;
+    private final BlockingQueue<Target> free = new ArrayBlockingQueue<>(3);
+    private final AtomicReference<Target> completed = new AtomicReference<>();
+    private volatile PixelRasterizer.View view;
+    private volatile boolean running = false;
+    private Thread worker;
+    private Target shown;    // FX thread only
+    private Target retiring; // FX thread only
+
+    // Create on the FX thread (reads the atlas pixels); width and height are the screen size
+    public RasterRenderer(FrameSource snapshots, RoadGeometry geometry, SpriteAtlas atlas,
+                          int width, int height, PixelRasterizer.View view) {
+        this.snapshots = snapshots;
+        this.rasterizer = new PixelRasterizer(geometry, atlas, width, height);
+        this.view = view;
+        for (int i = 0; i < 3; i++) {
+            free.add(new Target(width, height));
+        }
+    }
+
+    public void setView(PixelRasterizer.View view) {
+        this.view = view;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::loop, "raster-renderer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Returns once the worker has stopped, so the caller may read the FrameSource again
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+    }
+
+    // FX thread, once per pulse: the newest finished target, marked for upload, or null if none
+    public Target poll() {
+        Target next = completed.getAndSet(null);
+        if (next == null) {
+            return null;
+        }
+        next.buffer.updateBuffer(buffer -> null); // whole image changed
+        if (retiring != null) {
+            free.offer(retiring);
+        }
+        retiring = shown;
+        shown = next;
+        return next;
+    }
+
+    private void loop() {
+        CityFrame lastFrame = null;
+        long lastTime = 0;
+        PixelRasterizer.View lastView = null;
+        while (running) {
+            Target target;
+            try {
+                target = free.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            CityFrame frame = snapshots.latest();
+            PixelRasterizer.View current = view;
+            // JournalPlayer hands out the same frame with new contents, so the time counts too
+            if (frame == lastFrame && frame.time == lastTime && current == lastView) {
+                // Nothing new to draw
+                free.offer(target);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                continue;
+            }
+            target.figures.copyFiguresFrom(frame);
+            rasterizer.render(frame, current, target.pixels);
+            lastFrame = frame;
+            lastTime = frame.time;
+            lastView = current;
+
+            // A target the FX thread never picked up goes straight back
+            Target skipped = completed.getAndSet(target);
+            if (skipped != null) {
+                free.offer(skipped);
+            }
+        }
+    }
+}
@@ -1,40 +1,94 @@
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Road {
+    private final int index;
     private final String id;
     private final List<Vehicle> vehicles = new ArrayList<>();
     private final int capacity;
     private final CityMap.Direction direction;
+    // ReentrantLock rather than synchronized so virtual threads never pin on a road
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder traversedCount = new LongAdder(); // completed passes, see SimulationMetrics
+    private final SimulationMetrics metrics;
+    private final SimulationClock clock; // the city's, for event timestamps
+    private volatile int vehicleCount; // vehicles.size(), readable without the lock
 
     public Road(String id, int capacity, CityMap.Direction direction) {
+        this(-1, id, capacity, direction);
+    }
+
+    // A road outside any CityMap counts into a registry of its own
+    public Road(int index, String id, int capacity, CityMap.Direction direction) {
+        this(index, id, capacity, direction, new SimulationMetrics(List.of(), List.of(), SimulationClock.SYSTEM));
+    }
+
+    // index: position in CityMap.getRoads(), used by the columnar vehicle state; metrics: the
+    // city's, which keeps the vehicles-on-roads and capacity totals
+    public Road(int index, String id, int capacity, CityMap.Direction direction, SimulationMetrics metrics) {
+        this.index = index;
         this.id = id;
         this.capacity = capacity;
         this.direction = direction;
+        this.metrics = metrics;
+        this.clock = metrics.getClock();
+        metrics.roadAdded(capacity);
     }
 
-    public synchronized boolean addVehicle(Vehicle v) {
-        if (vehicles.size() < capacity) {
-            vehicles.add(v);
-            System.out.println("Vehicle " + v.getVehicleId() + " entered road " + id);
-            return true;
+    public boolean addVehicle(Vehicle v) {
+        boolean added;
+        lock.lock();
+        try {
+            added = vehicles.size() < capacity && vehicles.add(v);
+            vehicleCount = vehicles.size();
+        } finally {
+            lock.unlock();
+        }
+        if (added) {
+            metrics.roadEntered();
+            EventLog.log(clock, EventLog.Kind.ROAD_ENTERED, v.getVehicleId(), id);
         } else {
-            System.out.println("Road " + id + " is full.");
-            return false;
+            EventLog.log(clock, EventLog.Kind.ROAD_FULL, v.getVehicleId(), id);
         }
+        return added;
+    }
+
+    public void removeVehicle(Vehicle v) {
+        boolean removed;
+        lock.lock();
+        try {
+            removed = vehicles.remove(v);
+            vehicleCount = vehicles.size();
+        } finally {
+            lock.unlock();
+        }
+        if (removed) {
+            metrics.roadLeft();
+        }
+        EventLog.log(clock, EventLog.Kind.ROAD_LEFT, v.getVehicleId(), id);
+    }
+
+    void recordTraversal() {
+        traversedCount.increment();
+    }
+
+    // Vehicles that drove the whole road and left past its intersection
+    public long getTraversedCount() {
+        return traversedCount.sum();
     }
 
-    public synchronized void removeVehicle(Vehicle v) {
-        vehicles.remove(v);
-        System.out.println("Vehicle " + v.getVehicleId() + " left road " + id);
+    public int getIndex() {
+        return index;
     }
 
     public String getId() {
         return id;
     }
 
-    public synchronized int getVehicleCount() {
-        return vehicles.size();
+    public int getVehicleCount() {
+        return vehicleCount;
     }
 
     public int getCapacity() {
@@ -0,0 +1,123 @@
+import java.util.List;
+
+// Pixel layout of a grid city, computed once per setup. Entries are indexed by road index (a
+// road's light shares it) and intersection index, so drawing and placing vehicles are plain
+// array lookups instead of parsing road ids every frame.
+public class RoadGeometry {
+    final int roadCount;
+    final int intersectionCount;
+    final int gridSize;
+    final double cellPixels; // width and height of one grid cell
+    final boolean[] horizontal;
+    // Centre line: starts at origin, runs along the unit direction for length pixels
+    final double[] originX;
+    final double[] originY;
+    final double[] directionX;
+    final double[] directionY;
+    final double[] length;
+    // Asphalt rectangle
+    final double[] rectX;
+    final double[] rectY;
+    final double[] rectWidth;
+    final double[] rectHeight;
+    // Centre of the road's traffic light
+    final double[] lightX;
+    final double[] lightY;
+    // Top-left corner of each intersection square
+    final double[] intersectionX;
+    final double[] intersectionY;
+
+    // Same layout TrafficSimulationGUI always drew: each grid cell is 2 * cellSize pixels wide,
+    // roads run through the cell centre and are 2 * padding wide
+    public static RoadGeometry forGrid(CityMap cityMap, double cellSize, double padding) {
+        return new RoadGeometry(cityMap.getRoads(), cityMap.getGridSize(), cityMap.getIntersections().size(),
+                cellSize, padding);
+    }
+
+    private RoadGeometry(List<Road> roads, int gridSize, int intersectionCount, double cellSize, double padding) {
+        roadCount = roads.size();
+        this.intersectionCount = intersectionCount;
+        this.gridSize = gridSize;
+        this.cellPixels = cellSize * 2;
+        horizontal = new boolean[roadCount];
+        originX = new double[roadCount];
+        originY = new double[roadCount];
+        directionX = new double[roadCount];
+        directionY = new double[roadCount];
+        length = new double[roadCount];
+        rectX = new double[roadCount];
+        rectY = new double[roadCount];
+        rectWidth = new double[roadCount];
+        rectHeight = new double[roadCount];
+        lightX = new double[roadCount];
+        lightY = new double[roadCount];
+
+        for (Road road : roads) {
+            int index = road.getIndex();
+            int cell = index / 2; // roads are created R, C per cell in row-major order
+            double x = cell % gridSize * cellPixels;
+            double y = cell / gridSize * cellPixels;
+            length[index] = cellPixels;
+            if (road.getDirection() == CityMap.Direction.EAST) {
+                horizontal[index] = true;
+                originX[index] = x;
+                originY[index] = y + cellSize;
+                directionX[index] = 1;
+                rectX[index] = x;
+                rectY[index] = y + cellSize - padding;
+                rectWidth[index] = cellPixels;
+                rectHeight[index] = padding * 2;
+                lightX[index] = x + cellPixels - padding * 2;
+                lightY[index] = y + cellSize;
+            } else {
+                originX[index] = x + cellSize;
+                originY[index] = y;
+                directionY[index] = 1;
+                rectX[index] = x + cellSize - padding;
+                rectY[index] = y;
+                rectWidth[index] = padding * 2;
+                rectHeight[index] = cellPixels;
+                lightX[index] = x + cellSize;
+                lightY[index] = y + cellPixels - padding * 2;
+            }
+        }
+
+        intersectionX = new double[intersectionCount];
+        intersectionY = new double[intersectionCount];
+        for (int i = 0; i < intersectionCount; i++) {
+            intersectionX[i] = i % gridSize * cellPixels + cellSize - padding;
+            intersectionY[i] = i / gridSize * cellPixels + cellSize - padding;
+        }
+    }
+
+    // Point at the given fraction (0 to 1) along a road's centre line
+    public double pointX(int road, double progress) {
+        return originX[road] + directionX[road] * progress * length[road];
+    }
+
+    public double pointY(int road, double progress) {
+        return originY[road] + directionY[road] * progress * length[road];
+    }
+
+    // Grid column (or row) containing the given x (or y), clamped to the grid
+    public int cellAt(double coordinate) {
+        return (int) Math.max(0, Math.min(gridSize - 1, Math.floor(coordinate / cellPixels)));
+    }
+
+    // Width and height of the whole map
+    public double getMapSize() {
+        return gridSize * cellPixels;
+    }
+
+    public boolean isHorizontal(int road) {
+        return horizontal[road];
+    }
+
+    public int getRoadCount() {
+        return roadCount;
+    }
+
+    public int getIntersectionCount() {
+        return intersectionCount;
+    }
+}
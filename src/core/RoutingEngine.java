@@ -0,0 +1,386 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Origin-to-destination shortest paths over the road graph. Intersections are nodes and roads
+// directed edges, stored as int arrays (compressed adjacency) so graphs with millions of roads
+// stay compact. Queries run A* with ALT lower bounds: exact distances from and to a few landmark
+// nodes are precomputed once, and the triangle inequality turns them into a heuristic that
+// steers the search straight at the destination. Recent answers are kept in a bounded LRU cache.
+public class RoutingEngine {
+    public static final int DEFAULT_LANDMARKS = 8;
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    // Roads, lights and downstream intersections of one path, as CityMap list indices
+    public record Route(int[] roads, int[] lights, int[] intersections) {
+        public int length() {
+            return roads.length;
+        }
+    }
+
+    private final int nodeCount;
+    // Outgoing edges of node n are firstOut[n] until firstOut[n + 1]; incoming edges likewise
+    private final int[] firstOut;
+    private final int[] outHead;
+    private final int[] outRoad;
+    private final int[] outCost;
+    private final int[] firstIn;
+    private final int[] inTail;
+    private final int[] inCost;
+    private final int[] roadTo; // downstream node of every road, -1 for roads leading nowhere
+
+    private final int landmarkCount;
+    // Node-major: fromLandmark[node * landmarkCount + k] is the distance landmark k -> node
+    private final int[] fromLandmark;
+    private final int[] toLandmark;
+
+    private final Map<Long, Route> cache;
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+
+    // Search state reused by every query; stamps avoid clearing the arrays in between
+    private final int[] distance;
+    private final int[] parentEdge;
+    private final int[] parentNode;
+    private final int[] stamp;
+    private final int[] settledStamp;
+    private int currentStamp = 0;
+    private long[] heapKeys = new long[64];
+    private int[] heapNodes = new int[64];
+    private int heapSize = 0;
+    private int lastSettledCount = 0;
+
+    // Edge i is road edgeRoad[i] from node edgeFrom[i] to node edgeTo[i] with a non-negative cost
+    public RoutingEngine(int nodeCount, int roadCount, int[] edgeFrom, int[] edgeTo, int[] edgeRoad,
+                         int[] edgeCost, int landmarkCount, int cacheSize) {
+        if (landmarkCount <= 0 || cacheSize < 0) {
+            throw new IllegalArgumentException("Need at least one landmark and a non-negative cache size");
+        }
+        this.nodeCount = nodeCount;
+        int edgeCount = edgeFrom.length;
+
+        firstOut = new int[nodeCount + 1];
+        firstIn = new int[nodeCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            firstOut[edgeFrom[i] + 1]++;
+            firstIn[edgeTo[i] + 1]++;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            firstOut[n + 1] += firstOut[n];
+            firstIn[n + 1] += firstIn[n];
+        }
+        outHead = new int[edgeCount];
+        outRoad = new int[edgeCount];
+        outCost = new int[edgeCount];
+        inTail = new int[edgeCount];
+        inCost = new int[edgeCount];
+        int[] nextOut = Arrays.copyOf(firstOut, nodeCount);
+        int[] nextIn = Arrays.copyOf(firstIn, nodeCount);
+        roadTo = new int[roadCount];
+        Arrays.fill(roadTo, -1);
+        for (int i = 0; i < edgeCount; i++) {
+            int out = nextOut[edgeFrom[i]]++;
+            outHead[out] = edgeTo[i];
+            outRoad[out] = edgeRoad[i];
+            outCost[out] = edgeCost[i];
+            int in = nextIn[edgeTo[i]]++;
+            inTail[in] = edgeFrom[i];
+            inCost[in] = edgeCost[i];
+            roadTo[edgeRoad[i]] = edgeTo[i];
+        }
+
+        distance = new int[nodeCount];
+        parentEdge = new int[nodeCount];
+        parentNode = new int[nodeCount];
+        stamp = new int[nodeCount];
+        settledStamp = new int[nodeCount];
+
+        this.landmarkCount = Math.min(landmarkCount, Math.max(1, nodeCount));
+        fromLandmark = new int[nodeCount * this.landmarkCount];
+        toLandmark = new int[nodeCount * this.landmarkCount];
+        selectLandmarks();
+
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Route> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    // Road graph of CityMap.setupGrid: node i * gridSize + j is X i-j, road 2 * cell is R i-j
+    // (east to X i-(j+1)) and road 2 * cell + 1 is C i-j (south to X (i+1)-j). Every road costs
+    // the same; roads on the last row or column lead nowhere and are left out.
+    public static RoutingEngine grid(int gridSize, int landmarkCount, int cacheSize) {
+        int edgeCount = 2 * gridSize * (gridSize - 1);
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        int[] road = new int[edgeCount];
+        int[] cost = new int[edgeCount];
+        int edge = 0;
+        for (int i = 0; i < gridSize; i++) {
+            for (int j = 0; j < gridSize; j++) {
+                int cell = i * gridSize + j;
+                if (j + 1 < gridSize) {
+                    from[edge] = cell;
+                    to[edge] = cell + 1;
+                    road[edge++] = 2 * cell;
+                }
+                if (i + 1 < gridSize) {
+                    from[edge] = cell;
+                    to[edge] = cell + gridSize;
+                    road[edge++] = 2 * cell + 1;
+                }
+            }
+        }
+        Arrays.fill(cost, 1);
+        return new RoutingEngine(gridSize * gridSize, 2 * gridSize * gridSize, from, to, road, cost,
+                landmarkCount, cacheSize);
+    }
+
+    // Farthest-point selection: each new landmark is the node farthest (ignoring edge direction)
+    // from the landmarks picked so far, which spreads them over the edge of the graph
+    private void selectLandmarks() {
+        if (nodeCount == 0) {
+            return;
+        }
+        int[] nearest = new int[nodeCount];
+        Arrays.fill(nearest, INFINITY);
+        int landmark = 0;
+        for (int k = 0; k < landmarkCount; k++) {
+            if (k > 0) {
+                landmark = 0;
+                for (int n = 1; n < nodeCount; n++) {
+                    if (nearest[n] > nearest[landmark]) {
+                        landmark = n;
+                    }
+                }
+            }
+            dijkstra(landmark, true, true);
+            for (int n = 0; n < nodeCount; n++) {
+                if (stamp[n] == currentStamp && distance[n] < nearest[n]) {
+                    nearest[n] = distance[n];
+                }
+            }
+            dijkstra(landmark, true, false);
+            copyDistances(fromLandmark, k);
+            dijkstra(landmark, false, false);
+            copyDistances(toLandmark, k);
+        }
+    }
+
+    private void copyDistances(int[] target, int k) {
+        for (int n = 0; n < nodeCount; n++) {
+            target[n * landmarkCount + k] = stamp[n] == currentStamp ? distance[n] : INFINITY;
+        }
+    }
+
+    // Plain Dijkstra from source over outgoing (forward) or incoming edges, or both (undirected)
+    private void dijkstra(int source, boolean forward, boolean undirected) {
+        startSearch(source);
+        while (heapSize > 0) {
+            int node = heapNodes[0];
+            int key = (int) (heapKeys[0] >>> 31);
+            pop();
+            if (key > distance[node] || settledStamp[node] == currentStamp) {
+                continue;
+            }
+            settledStamp[node] = currentStamp;
+            if (forward || undirected) {
+                for (int e = firstOut[node]; e < firstOut[node + 1]; e++) {
+                    relax(outHead[e], distance[node] + outCost[e], node, e, 0);
+                }
+            }
+            if (!forward || undirected) {
+                for (int e = firstIn[node]; e < firstIn[node + 1]; e++) {
+                    relax(inTail[e], distance[node] + inCost[e], node, -1, 0);
+                }
+            }
+        }
+    }
+
+    // Cached route between two intersections, or null when the destination cannot be reached
+    public synchronized Route findRoute(int origin, int destination) {
+        long key = ((long) origin << 32) | destination;
+        Route route = cache.get(key);
+        if (route != null) {
+            cacheHits++;
+            return route;
+        }
+        cacheMisses++;
+        route = search(origin, destination);
+        if (route != null) {
+            cache.put(key, route);
+        }
+        return route;
+    }
+
+    private Route search(int origin, int destination) {
+        startSearch(origin);
+        lastSettledCount = 0;
+        boolean found = false;
+        while (heapSize > 0) {
+            int node = heapNodes[0];
+            pop();
+            if (settledStamp[node] == currentStamp) {
+                continue;
+            }
+            settledStamp[node] = currentStamp;
+            lastSettledCount++;
+            if (node == destination) {
+                found = true;
+                break;
+            }
+            for (int e = firstOut[node]; e < firstOut[node + 1]; e++) {
+                int head = outHead[e];
+                int tentative = distance[node] + outCost[e];
+                if (settledStamp[head] != currentStamp) {
+                    int bound = lowerBound(head, destination);
+                    if (bound != INFINITY) {
+                        relax(head, tentative, node, e, bound);
+                    }
+                }
+            }
+        }
+        if (!found) {
+            return null;
+        }
+
+        int legs = 0;
+        for (int node = destination; node != origin; node = parentNode[node]) {
+            legs++;
+        }
+        int[] roads = new int[legs];
+        int[] lights = new int[legs];
+        int[] intersections = new int[legs];
+        for (int node = destination, leg = legs - 1; node != origin; node = parentNode[node], leg--) {
+            roads[leg] = outRoad[parentEdge[node]];
+            lights[leg] = roads[leg]; // every road has exactly one light, created in the same order
+            intersections[leg] = node;
+        }
+        return new Route(roads, lights, intersections);
+    }
+
+    // ALT heuristic: d(v, t) >= d(L, t) - d(L, v) and d(v, t) >= d(v, L) - d(t, L) for every
+    // landmark L. INFINITY when some landmark proves t unreachable from v.
+    private int lowerBound(int node, int target) {
+        int bound = 0;
+        int nodeBase = node * landmarkCount;
+        int targetBase = target * landmarkCount;
+        for (int k = 0; k < landmarkCount; k++) {
+            int fromToTarget = fromLandmark[targetBase + k];
+            int fromToNode = fromLandmark[nodeBase + k];
+            if (fromToNode != INFINITY && fromToTarget != INFINITY) {
+                bound = Math.max(bound, fromToTarget - fromToNode);
+            }
+            int nodeToLandmark = toLandmark[nodeBase + k];
+            int targetToLandmark = toLandmark[targetBase + k];
+            if (nodeToLandmark != INFINITY && targetToLandmark != INFINITY) {
+                bound = Math.max(bound, nodeToLandmark - targetToLandmark);
+            } else if (nodeToLandmark == INFINITY && targetToLandmark != INFINITY) {
+                return INFINITY; // t reaches L but v does not, so v cannot reach t
+            }
+        }
+        return bound;
+    }
+
+    private void startSearch(int source) {
+        if (++currentStamp == 0) {
+            // Stamp wrapped around: forget every earlier search
+            Arrays.fill(stamp, 0);
+            Arrays.fill(settledStamp, 0);
+            currentStamp = 1;
+        }
+        heapSize = 0;
+        stamp[source] = currentStamp;
+        distance[source] = 0;
+        parentEdge[source] = -1;
+        parentNode[source] = -1;
+        push(0, 0, source);
+    }
+
+    private void relax(int node, int tentative, int parent, int edge, int bound) {
+        if (stamp[node] != currentStamp || tentative < distance[node]) {
+            stamp[node] = currentStamp;
+            distance[node] = tentative;
+            parentNode[node] = parent;
+            parentEdge[node] = edge;
+            push(tentative + bound, tentative, node);
+        }
+    }
+
+    // Binary min-heap on (estimate, deeper first) packed into one long; stale entries are skipped on pop
+    private void push(int estimate, int distanceSoFar, int node) {
+        if (heapSize == heapKeys.length) {
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+        }
+        long key = ((long) estimate << 31) | (Integer.MAX_VALUE - distanceSoFar);
+        int index = heapSize++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heapKeys[parent] <= key) {
+                break;
+            }
+            heapKeys[index] = heapKeys[parent];
+            heapNodes[index] = heapNodes[parent];
+            index = parent;
+        }
+        heapKeys[index] = key;
+        heapNodes[index] = node;
+    }
+
+    private void pop() {
+        long key = heapKeys[--heapSize];
+        int node = heapNodes[heapSize];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                child++;
+            }
+            if (heapKeys[child] >= key) {
+                break;
+            }
+            heapKeys[index] = heapKeys[child];
+            heapNodes[index] = heapNodes[child];
+            index = child;
+        }
+        heapKeys[index] = key;
+        heapNodes[index] = node;
+    }
+
+    // Downstream intersection of a road, or -1 when it leads nowhere
+    public int getRoadTarget(int road) {
+        return roadTo[road];
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getLandmarkCount() {
+        return landmarkCount;
+    }
+
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    public synchronized long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public synchronized int getCacheSize() {
+        return cache.size();
+    }
+
+    // Nodes the last uncached query settled, a measure of how well the landmarks guide it
+    public synchronized int getLastSettledCount() {
+        return lastSettledCount;
+    }
+}
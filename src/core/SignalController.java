@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Drives traffic lights from one shared schedule instead of one thread per light. Lights are
+// grouped per intersection, one phase per approach; the phases of a group take turns being
+// green, so lights no longer compete for a city-wide cap on green lights.
+public class SignalController {
+    private static final int ALL_RED_TIME = 1000; // clearance between two phases of an intersection
+    private static final int FLASH_TIME = 300;
+    private static final int EMERGENCY_FLASHES = 20;
+
+    private enum Step { CLEARANCE, GREEN, YELLOW, EMERGENCY }
+
+    private static final class PhaseGroup {
+        final TrafficLight[] phases;
+        int phase = -1;
+        Step step = Step.CLEARANCE;
+        long nextChange = Long.MIN_VALUE;
+        int flashes;
+
+        PhaseGroup(TrafficLight[] phases) {
+            this.phases = phases;
+        }
+    }
+
+    private final SimulationClock clock;
+    private final List<PhaseGroup> groups = new ArrayList<>();
+    private final PriorityQueue<PhaseGroup> schedule =
+            new PriorityQueue<>(Comparator.comparingLong(group -> group.nextChange));
+    private volatile boolean running = false;
+    private Thread worker;
+
+    public SignalController(SimulationClock clock) {
+        this.clock = clock;
+    }
+
+    // Lights that take turns, in order. A single light cycles green, yellow and red on its own.
+    public synchronized void addGroup(List<TrafficLight> phases) {
+        if (phases.isEmpty()) {
+            return;
+        }
+        PhaseGroup group = new PhaseGroup(phases.toArray(new TrafficLight[0]));
+        groups.add(group);
+        schedule.add(group);
+    }
+
+    // Applies every change due by now (simulated or wall time, ms); returns the time of the next one
+    public synchronized long step(long now) {
+        while (!schedule.isEmpty() && schedule.peek().nextChange <= now) {
+            PhaseGroup group = schedule.poll();
+            advance(group, now);
+            schedule.add(group);
+        }
+        return schedule.isEmpty() ? Long.MAX_VALUE : schedule.peek().nextChange;
+    }
+
+    private void advance(PhaseGroup group, long now) {
+        switch (group.step) {
+            case CLEARANCE -> {
+                // Check for emergency mode (rare random event). Drawn from the group's first light,
+                // so the outcome does not depend on which controller runs the group.
+                if (group.phases[0].getRandom().nextDouble() < 0.01) {
+                    for (TrafficLight light : group.phases) {
+                        light.setEmergencyMode(true);
+                        EventLog.log(clock, EventLog.Kind.LIGHT_EMERGENCY, null, light.getLightId());
+                        light.applyState(TrafficLight.State.YELLOW);
+                    }
+                    group.flashes = 0;
+                    group.step = Step.EMERGENCY;
+                    group.nextChange = now + FLASH_TIME;
+                } else {
+                    group.phase = (group.phase + 1) % group.phases.length;
+                    TrafficLight light = group.phases[group.phase];
+                    light.applyState(TrafficLight.State.GREEN);
+                    group.step = Step.GREEN;
+                    group.nextChange = now + light.calculateGreenTime();
+                }
+            }
+            case GREEN -> {
+                group.phases[group.phase].applyState(TrafficLight.State.YELLOW);
+                group.step = Step.YELLOW;
+                group.nextChange = now + TrafficLight.YELLOW_TIME;
+            }
+            case YELLOW -> {
+                TrafficLight light = group.phases[group.phase];
+                light.applyState(TrafficLight.State.RED);
+                group.step = Step.CLEARANCE;
+                group.nextChange = now + (group.phases.length == 1 ? light.calculateRedTime() : ALL_RED_TIME);
+            }
+            case EMERGENCY -> {
+                // Blink yellow on every approach, then resume the cycle from all red
+                group.flashes++;
+                boolean done = group.flashes == EMERGENCY_FLASHES;
+                for (TrafficLight light : group.phases) {
+                    if (done) {
+                        light.setEmergencyMode(false);
+                        light.applyState(TrafficLight.State.RED);
+                    } else {
+                        light.applyState(group.flashes % 2 == 1 ? TrafficLight.State.BLINKING : TrafficLight.State.YELLOW);
+                    }
+                }
+                group.step = done ? Step.CLEARANCE : Step.EMERGENCY;
+                group.nextChange = now + (done ? ALL_RED_TIME : FLASH_TIME);
+            }
+        }
+    }
+
+    // Runs the schedule on the clock from a single daemon thread (thread execution modes)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::loop, "signal-controller");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Joins outside the lock: the worker needs it for step() before it can see running is false
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = worker;
+            worker = null;
+        }
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void loop() {
+        // The interrupt also ends a worker that a quick stop() and start() left behind
+        while (running && !Thread.currentThread().isInterrupted()) {
+            long next = step(clock.currentTimeMillis());
+            long delay = next - clock.currentTimeMillis();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(Math.min(delay, 1000));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        synchronized (this) {
+            if (worker == Thread.currentThread()) {
+                running = false;
+                worker = null;
+            }
+        }
+    }
+
+    public synchronized int getGroupCount() {
+        return groups.size();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,6 @@
+// Source of "now" for vehicles, lights and intersections, so stepped modes can run on simulated time
+public interface SimulationClock {
+    SimulationClock SYSTEM = System::currentTimeMillis;
+
+    long currentTimeMillis();
+}
@@ -0,0 +1,129 @@
+// Advances every light and vehicle of a CityMap in one loop with a fixed time step,
+// instead of one sleeping thread per object.
+public class SimulationEngine {
+    public static final long DEFAULT_STEP_MILLIS = 20;
+
+    protected final CityMap cityMap;
+    private final long stepMillis;
+    private final VirtualClock clock;
+    private long simulationTime;
+    private int unfinishedVehicles = -1; // counted during each step, -1 before the first
+    private volatile boolean running = false;
+    private Thread worker;
+
+    public SimulationEngine(CityMap cityMap) {
+        this(cityMap, DEFAULT_STEP_MILLIS);
+    }
+
+    public SimulationEngine(CityMap cityMap, long stepMillis) {
+        if (stepMillis <= 0) {
+            throw new IllegalArgumentException("Step must be positive: " + stepMillis);
+        }
+        this.cityMap = cityMap;
+        this.stepMillis = stepMillis;
+        this.clock = cityMap.getVirtualClock();
+        this.simulationTime = clock.currentTimeMillis();
+    }
+
+    public void step() {
+        simulationTime += stepMillis;
+        clock.advanceTo(simulationTime);
+        unfinishedVehicles = stepAll(simulationTime);
+    }
+
+    // Advances lights and vehicles to now; returns the number of vehicles not yet finished
+    protected int stepAll(long now) {
+        if (cityMap.getSignalMode() == CityMap.SignalMode.CONTROLLER) {
+            cityMap.getSignalController().step(now);
+        } else {
+            for (TrafficLight light : cityMap.getLights()) {
+                light.step(now);
+            }
+        }
+        int unfinished = 0;
+        for (Vehicle vehicle : cityMap.getVehicles()) {
+            vehicle.step(now);
+            if (!vehicle.isFinished()) {
+                unfinished++;
+            }
+        }
+        return unfinished;
+    }
+
+    // Runs as fast as possible until the given simulated duration passes or every vehicle is done
+    public void runFor(long durationMillis) {
+        long endTime = simulationTime + durationMillis;
+        while (simulationTime < endTime && !isFinished()) {
+            step();
+        }
+    }
+
+    public boolean isFinished() {
+        if (unfinishedVehicles >= 0) {
+            return unfinishedVehicles == 0;
+        }
+        VehicleStore store = cityMap.getVehicleStore();
+        for (int slot = 0; slot < store.size(); slot++) {
+            if (!store.isFinished(slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Steps on a background thread; realTime paces simulated time to the wall clock for the GUI
+    public synchronized void start(boolean realTime) {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(() -> loop(realTime), "simulation-engine");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+        cityMap.getLights().forEach(TrafficLight::stopStepping);
+    }
+
+    private void loop(boolean realTime) {
+        long startWall = System.currentTimeMillis();
+        long startSimulation = simulationTime;
+        while (running && !isFinished()) {
+            step();
+            if (realTime) {
+                long ahead = (simulationTime - startSimulation) - (System.currentTimeMillis() - startWall);
+                if (ahead > 0) {
+                    try {
+                        Thread.sleep(ahead);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        running = false;
+    }
+
+    public long getSimulationTime() {
+        return simulationTime;
+    }
+
+    public long getStepMillis() {
+        return stepMillis;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
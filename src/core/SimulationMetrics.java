@@ -0,0 +1,273 @@
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Instrumentation of one CityMap: latency histograms fed by the vehicles, retry counts, and the
+// throughput counters roads and intersections keep themselves. Recording is lock-free and cheap
+// enough to stay on in every mode; reading goes through snapshot(), the periodic reporter or JMX.
+// Also keeps the city-wide dashboard figures as striped counters that roads and the VehicleStore
+// update as vehicles come and go, so reading them costs the same for any city size.
+public class SimulationMetrics implements SimulationMetricsMXBean {
+    private static final String DOMAIN = "TrafficSimulation";
+
+    private final List<Road> roads;
+    private final List<Intersection> intersections;
+    private final SimulationClock clock;
+    private final LatencyHistogram admissionWait = new LatencyHistogram();
+    private final LatencyHistogram redLightWait = new LatencyHistogram();
+    private final LatencyHistogram roadTraversal = new LatencyHistogram();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retriesExhausted = new LongAdder();
+    // Dashboard figures
+    private final LongAdder vehiclesOnRoads = new LongAdder();
+    private final LongAdder roadCapacity = new LongAdder();
+    private final LongAdder[] activeByType = new LongAdder[Vehicle.VehicleType.values().length];
+    private final LongAdder activeWaitMillis = new LongAdder(); // accumulated wait of the active vehicles
+    private volatile boolean reporting = false;
+    private Thread reporter;
+    private ObjectName registeredName;
+
+    public SimulationMetrics(List<Road> roads, List<Intersection> intersections, SimulationClock clock) {
+        this.roads = roads;
+        this.intersections = intersections;
+        this.clock = clock;
+        for (int i = 0; i < activeByType.length; i++) {
+            activeByType[i] = new LongAdder();
+        }
+    }
+
+    public void recordAdmissionWait(long millis) {
+        admissionWait.record(millis);
+    }
+
+    public void recordRedLightWait(long millis) {
+        redLightWait.record(millis);
+    }
+
+    public void recordRoadTraversal(Road road, long millis) {
+        roadTraversal.record(millis);
+        road.recordTraversal();
+    }
+
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    public void recordRetriesExhausted() {
+        retriesExhausted.increment();
+    }
+
+    void roadAdded(int capacity) {
+        roadCapacity.add(capacity);
+    }
+
+    void roadEntered() {
+        vehiclesOnRoads.increment();
+    }
+
+    void roadLeft() {
+        vehiclesOnRoads.decrement();
+    }
+
+    void vehicleAdded(int typeOrdinal) {
+        activeByType[typeOrdinal].increment();
+    }
+
+    // A vehicle was cancelled (or, for a handed-over vehicle, brought back); its wait so far moves with it
+    void vehicleActiveChanged(int typeOrdinal, boolean active, long waitMillis) {
+        if (active) {
+            activeByType[typeOrdinal].increment();
+            activeWaitMillis.add(waitMillis);
+        } else {
+            activeByType[typeOrdinal].decrement();
+            activeWaitMillis.add(-waitMillis);
+        }
+    }
+
+    void activeWaitAdded(long millis) {
+        activeWaitMillis.add(millis);
+    }
+
+    // For a new grid; only while the simulation is stopped
+    public void reset() {
+        admissionWait.reset();
+        redLightWait.reset();
+        roadTraversal.reset();
+        retries.reset();
+        retriesExhausted.reset();
+        vehiclesOnRoads.reset();
+        roadCapacity.reset();
+        for (LongAdder count : activeByType) {
+            count.reset();
+        }
+        activeWaitMillis.reset();
+    }
+
+    // Vehicles on roads as a percentage of total road capacity
+    @Override
+    public int getCongestionPercent() {
+        long capacity = roadCapacity.sum();
+        return capacity > 0 ? (int) (vehiclesOnRoads.sum() * 100 / capacity) : 0;
+    }
+
+    public long getVehiclesOnRoads() {
+        return vehiclesOnRoads.sum();
+    }
+
+    // Vehicles that were not cancelled, finished ones included
+    @Override
+    public int getActiveVehicles() {
+        long active = 0;
+        for (LongAdder count : activeByType) {
+            active += count.sum();
+        }
+        return (int) active;
+    }
+
+    public int getActiveVehicles(Vehicle.VehicleType type) {
+        return (int) activeByType[type.ordinal()].sum();
+    }
+
+    // Average accumulated wait of the active vehicles. The sums are read one after the other, so
+    // while vehicles are cancelled the figure can be off by one vehicle's wait.
+    @Override
+    public double getAverageWaitSeconds() {
+        int active = getActiveVehicles();
+        return active > 0 ? activeWaitMillis.sum() / 1000.0 / active : 0.0;
+    }
+
+    public MetricsSnapshot snapshot() {
+        long[] roadThroughput = new long[roads.size()];
+        for (int road = 0; road < roadThroughput.length; road++) {
+            roadThroughput[road] = roads.get(road).getTraversedCount();
+        }
+        long[] intersectionThroughput = new long[intersections.size()];
+        long timeouts = 0;
+        for (int i = 0; i < intersectionThroughput.length; i++) {
+            Intersection intersection = intersections.get(i);
+            intersectionThroughput[i] = intersection.getAdmittedCount();
+            timeouts += intersection.getTimedOutCount();
+        }
+        return new MetricsSnapshot(clock.currentTimeMillis(), admissionWait.snapshot(), redLightWait.snapshot(),
+                roadTraversal.snapshot(), retries.sum(), retriesExhausted.sum(), timeouts, roadThroughput,
+                intersectionThroughput);
+    }
+
+    // Hands the listener what changed over each interval (wall clock), on a daemon thread
+    public synchronized void startReporting(long intervalMillis, Consumer<MetricsSnapshot> listener) {
+        if (reporting) {
+            return;
+        }
+        reporting = true;
+        reporter = new Thread(() -> report(intervalMillis, listener), "metrics-reporter");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    public synchronized void stopReporting() {
+        reporting = false;
+        if (reporter != null) {
+            reporter.interrupt();
+            try {
+                reporter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reporter = null;
+        }
+    }
+
+    private void report(long intervalMillis, Consumer<MetricsSnapshot> listener) {
+        MetricsSnapshot previous = snapshot();
+        while (reporting) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+            MetricsSnapshot current = snapshot();
+            listener.accept(current.since(previous));
+            previous = current;
+        }
+    }
+
+    // Registers on the platform MBean server as TrafficSimulation:type=SimulationMetrics,name=<name>,
+    // taking the name over from any earlier city registered with it
+    public synchronized void registerMBean(String name) throws JMException {
+        unregisterMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=SimulationMetrics,name=" + ObjectName.quote(name));
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(this, objectName);
+        registeredName = objectName;
+    }
+
+    public synchronized void unregisterMBean() throws JMException {
+        if (registeredName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registeredName)) {
+                server.unregisterMBean(registeredName);
+            }
+            registeredName = null;
+        }
+    }
+
+    @Override
+    public long getSimulationTimeMillis() {
+        return clock.currentTimeMillis();
+    }
+
+    SimulationClock getClock() {
+        return clock;
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getAdmissionWait() {
+        return admissionWait.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getRedLightWait() {
+        return redLightWait.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getRoadTraversal() {
+        return roadTraversal.snapshot();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getRetriesExhausted() {
+        return retriesExhausted.sum();
+    }
+
+    @Override
+    public long getIntersectionTimeouts() {
+        long timeouts = 0;
+        for (Intersection intersection : intersections) {
+            timeouts += intersection.getTimedOutCount();
+        }
+        return timeouts;
+    }
+
+    @Override
+    public long[] getRoadThroughput() {
+        return snapshot().getRoadThroughput();
+    }
+
+    @Override
+    public long[] getIntersectionThroughput() {
+        return snapshot().getIntersectionThroughput();
+    }
+}
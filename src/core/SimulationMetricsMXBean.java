@@ -0,0 +1,27 @@
+// JMX view of a SimulationMetrics; every read takes a fresh snapshot.
+// Histograms appear as composite attributes (count, mean, p50, p90, p99, p99.9, max in ms).
+public interface SimulationMetricsMXBean {
+    long getSimulationTimeMillis();
+
+    int getActiveVehicles();
+
+    int getCongestionPercent();
+
+    double getAverageWaitSeconds();
+
+    LatencyHistogram.Snapshot getAdmissionWait();
+
+    LatencyHistogram.Snapshot getRedLightWait();
+
+    LatencyHistogram.Snapshot getRoadTraversal();
+
+    long getRetries();
+
+    long getRetriesExhausted();
+
+    long getIntersectionTimeouts();
+
+    long[] getRoadThroughput();
+
+    long[] getIntersectionThroughput();
+}
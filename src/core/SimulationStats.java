@@ -0,0 +1,226 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+// Point-in-time statistics of a CityMap; same figures the GUI stats bar shows, without JavaFX.
+// Kept as raw sums so the statistics of several distributed workers can be merged.
+public class SimulationStats {
+    private long simulatedMillis;
+    private int vehicleCount;
+    private int activeVehicles;
+    private int completedVehicles;
+    private int cancelledVehicles;
+    private int vehiclesOnRoads;
+    private int roadCapacity;
+    private int notCancelledVehicles;
+    private long notCancelledWaitMillis;
+    private long totalWaitMillis;
+    private final int[] activeByType = new int[Vehicle.VehicleType.values().length];
+    private long intersectionAdmissions;
+    private long intersectionTimeouts;
+    private double intersectionWaitMillis;
+    private long intersectionMaxWaitMillis;
+    private int intersectionPeakQueue;
+
+    private SimulationStats() {
+    }
+
+    public static SimulationStats collect(CityMap cityMap, long simulatedMillis) {
+        return collect(cityMap, simulatedMillis, slot -> true, road -> true, intersection -> true);
+    }
+
+    // Only counts the selected vehicle slots, roads and intersections (a distributed worker's share)
+    static SimulationStats collect(CityMap cityMap, long simulatedMillis, IntPredicate slots,
+                                   Predicate<Road> roads, Predicate<Intersection> intersections) {
+        SimulationStats stats = new SimulationStats();
+        stats.simulatedMillis = simulatedMillis;
+
+        VehicleStore store = cityMap.getVehicleStore();
+        for (int slot = 0; slot < store.size(); slot++) {
+            if (!slots.test(slot)) {
+                continue;
+            }
+            stats.vehicleCount++;
+            long waitTime = store.getTotalWaitTime(slot);
+            stats.totalWaitMillis += waitTime;
+            if (!store.isActive(slot)) {
+                stats.cancelledVehicles++;
+                continue;
+            }
+            stats.notCancelledVehicles++;
+            stats.notCancelledWaitMillis += waitTime;
+            if (store.isFinished(slot)) {
+                stats.completedVehicles++;
+            } else {
+                stats.activeVehicles++;
+                stats.activeByType[store.getTypeOrdinal(slot)]++;
+            }
+        }
+
+        for (Road road : cityMap.getRoads()) {
+            if (roads.test(road)) {
+                stats.roadCapacity += road.getCapacity();
+                stats.vehiclesOnRoads += road.getVehicleCount();
+            }
+        }
+
+        for (Intersection intersection : cityMap.getIntersections()) {
+            if (!intersections.test(intersection)) {
+                continue;
+            }
+            long admitted = intersection.getAdmittedCount();
+            stats.intersectionAdmissions += admitted;
+            stats.intersectionTimeouts += intersection.getTimedOutCount();
+            stats.intersectionWaitMillis += intersection.getAverageWaitMillis() * admitted;
+            stats.intersectionMaxWaitMillis = Math.max(stats.intersectionMaxWaitMillis, intersection.getMaxWaitMillis());
+            stats.intersectionPeakQueue = Math.max(stats.intersectionPeakQueue, intersection.getPeakQueueLength());
+        }
+        return stats;
+    }
+
+    // Combines the statistics of disjoint parts of one city taken at the same simulated time
+    public static SimulationStats merge(List<SimulationStats> parts) {
+        SimulationStats merged = new SimulationStats();
+        for (SimulationStats part : parts) {
+            merged.simulatedMillis = Math.max(merged.simulatedMillis, part.simulatedMillis);
+            merged.vehicleCount += part.vehicleCount;
+            merged.activeVehicles += part.activeVehicles;
+            merged.completedVehicles += part.completedVehicles;
+            merged.cancelledVehicles += part.cancelledVehicles;
+            merged.vehiclesOnRoads += part.vehiclesOnRoads;
+            merged.roadCapacity += part.roadCapacity;
+            merged.notCancelledVehicles += part.notCancelledVehicles;
+            merged.notCancelledWaitMillis += part.notCancelledWaitMillis;
+            merged.totalWaitMillis += part.totalWaitMillis;
+            for (int i = 0; i < merged.activeByType.length; i++) {
+                merged.activeByType[i] += part.activeByType[i];
+            }
+            merged.intersectionAdmissions += part.intersectionAdmissions;
+            merged.intersectionTimeouts += part.intersectionTimeouts;
+            merged.intersectionWaitMillis += part.intersectionWaitMillis;
+            merged.intersectionMaxWaitMillis = Math.max(merged.intersectionMaxWaitMillis, part.intersectionMaxWaitMillis);
+            merged.intersectionPeakQueue = Math.max(merged.intersectionPeakQueue, part.intersectionPeakQueue);
+        }
+        return merged;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(simulatedMillis);
+        out.writeInt(vehicleCount);
+        out.writeInt(activeVehicles);
+        out.writeInt(completedVehicles);
+        out.writeInt(cancelledVehicles);
+        out.writeInt(vehiclesOnRoads);
+        out.writeInt(roadCapacity);
+        out.writeInt(notCancelledVehicles);
+        out.writeLong(notCancelledWaitMillis);
+        out.writeLong(totalWaitMillis);
+        for (int count : activeByType) {
+            out.writeInt(count);
+        }
+        out.writeLong(intersectionAdmissions);
+        out.writeLong(intersectionTimeouts);
+        out.writeDouble(intersectionWaitMillis);
+        out.writeLong(intersectionMaxWaitMillis);
+        out.writeInt(intersectionPeakQueue);
+    }
+
+    public static SimulationStats readFrom(DataInput in) throws IOException {
+        SimulationStats stats = new SimulationStats();
+        stats.simulatedMillis = in.readLong();
+        stats.vehicleCount = in.readInt();
+        stats.activeVehicles = in.readInt();
+        stats.completedVehicles = in.readInt();
+        stats.cancelledVehicles = in.readInt();
+        stats.vehiclesOnRoads = in.readInt();
+        stats.roadCapacity = in.readInt();
+        stats.notCancelledVehicles = in.readInt();
+        stats.notCancelledWaitMillis = in.readLong();
+        stats.totalWaitMillis = in.readLong();
+        for (int i = 0; i < stats.activeByType.length; i++) {
+            stats.activeByType[i] = in.readInt();
+        }
+        stats.intersectionAdmissions = in.readLong();
+        stats.intersectionTimeouts = in.readLong();
+        stats.intersectionWaitMillis = in.readDouble();
+        stats.intersectionMaxWaitMillis = in.readLong();
+        stats.intersectionPeakQueue = in.readInt();
+        return stats;
+    }
+
+    // Vehicles on roads as a percentage of total road capacity; constant time, from the city's counters
+    public static int calculateTotalCongestion(CityMap cityMap) {
+        return cityMap.getMetrics().getCongestionPercent();
+    }
+
+    // Average accumulated wait of the active vehicles, in seconds; constant time like the above
+    public static double calculateAverageWaitTime(CityMap cityMap) {
+        return cityMap.getMetrics().getAverageWaitSeconds();
+    }
+
+    // Vehicles that completed their route per simulated minute
+    public double getThroughputPerMinute() {
+        return simulatedMillis > 0 ? completedVehicles * 60_000.0 / simulatedMillis : 0.0;
+    }
+
+    public long getSimulatedMillis() {
+        return simulatedMillis;
+    }
+
+    public int getVehicleCount() {
+        return vehicleCount;
+    }
+
+    public int getActiveVehicles() {
+        return activeVehicles;
+    }
+
+    public int getCompletedVehicles() {
+        return completedVehicles;
+    }
+
+    public int getCancelledVehicles() {
+        return cancelledVehicles;
+    }
+
+    public int getCongestionPercent() {
+        return roadCapacity > 0 ? (vehiclesOnRoads * 100) / roadCapacity : 0;
+    }
+
+    // Same figure as calculateAverageWaitTime: every vehicle that was not cancelled
+    public double getAverageWaitSeconds() {
+        return notCancelledVehicles > 0 ? notCancelledWaitMillis / 1000.0 / notCancelledVehicles : 0.0;
+    }
+
+    public double getAverageWaitAllSeconds() {
+        return vehicleCount > 0 ? totalWaitMillis / 1000.0 / vehicleCount : 0.0;
+    }
+
+    // Intersection figures summed (or maxed) over all intersections
+    public long getIntersectionAdmissions() {
+        return intersectionAdmissions;
+    }
+
+    public long getIntersectionTimeouts() {
+        return intersectionTimeouts;
+    }
+
+    public double getIntersectionAverageWaitMillis() {
+        return intersectionAdmissions > 0 ? intersectionWaitMillis / intersectionAdmissions : 0.0;
+    }
+
+    public long getIntersectionMaxWaitMillis() {
+        return intersectionMaxWaitMillis;
+    }
+
+    public int getIntersectionPeakQueue() {
+        return intersectionPeakQueue;
+    }
+
+    public int getActiveCount(Vehicle.VehicleType type) {
+        return activeByType[type.ordinal()];
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Captures CityFrames of a CityMap on a background thread and hands the newest one to a single
+// reader through a triple buffer: the writer fills its back frame and swaps it into the middle
+// slot, the reader swaps the middle slot out for its front frame. Neither side ever waits, and
+// the frame a reader holds is not touched until it asks for the next one.
+public class SnapshotPublisher implements FrameSource {
+    public static final long DEFAULT_INTERVAL_MILLIS = 16;
+    private static final int FRESH = 4; // set on the middle slot until the reader takes it
+    private static final int INDEX_MASK = 3;
+
+    private final CityMap cityMap;
+    private final CityFrame[] frames = { new CityFrame(), new CityFrame(), new CityFrame() };
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;  // writer's frame
+    private int front = 2; // reader's frame
+    private volatile boolean running = false;
+    private Thread worker;
+
+    public SnapshotPublisher(CityMap cityMap) {
+        this.cityMap = cityMap;
+    }
+
+    // Captures the first frame on the calling thread, then keeps capturing every intervalMillis
+    public synchronized void start(long intervalMillis) {
+        if (running) {
+            return;
+        }
+        publish();
+        running = true;
+        worker = new Thread(() -> loop(intervalMillis), "snapshot-publisher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+    }
+
+    // Writer side: only one thread at a time, which is the worker while it runs
+    public void publish() {
+        frames[back].capture(cityMap);
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    // Reader side: the newest published frame, unchanged until the next call
+    @Override
+    public CityFrame latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return frames[front];
+    }
+
+    private void loop(long intervalMillis) {
+        while (running) {
+            publish();
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+}
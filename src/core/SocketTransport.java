@@ -0,0 +1,116 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Length-prefixed messages over TCP. The coordinator listens and workers connect to it: either
+// worker processes this transport starts on the local machine, or workers started by hand on
+// other machines with "DistributedWorker --coordinator host:port".
+public class SocketTransport implements Transport {
+    private static final int ACCEPT_TIMEOUT = 60_000;
+
+    private final InetSocketAddress bindAddress;
+    private final boolean spawnLocalWorkers;
+    private final List<Process> processes = new ArrayList<>();
+    private final List<Channel> channels = new ArrayList<>();
+    private ServerSocket serverSocket;
+
+    // Loopback on a free port, one local worker process per worker
+    public static SocketTransport localProcesses() {
+        return new SocketTransport(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), true);
+    }
+
+    // Waits for workers started elsewhere to connect to the given address
+    public static SocketTransport listen(InetSocketAddress bindAddress) {
+        return new SocketTransport(bindAddress, false);
+    }
+
+    private SocketTransport(InetSocketAddress bindAddress, boolean spawnLocalWorkers) {
+        this.bindAddress = bindAddress;
+        this.spawnLocalWorkers = spawnLocalWorkers;
+    }
+
+    static final class SocketChannel implements Channel {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        SocketChannel(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        @Override
+        public void send(byte[] message) throws IOException {
+            out.writeInt(message.length);
+            out.write(message);
+            out.flush();
+        }
+
+        @Override
+        public byte[] receive() throws IOException {
+            byte[] message = new byte[in.readInt()];
+            in.readFully(message);
+            return message;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Override
+    public List<Channel> open(int workerCount) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(bindAddress);
+        serverSocket.setSoTimeout(ACCEPT_TIMEOUT);
+        if (spawnLocalWorkers) {
+            String address = serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            for (int i = 0; i < workerCount; i++) {
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        "DistributedWorker", "--coordinator", address)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+        }
+        // Workers are numbered in the order they connect
+        for (int i = 0; i < workerCount; i++) {
+            channels.add(new SocketChannel(serverSocket.accept()));
+        }
+        return channels;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Channel channel : channels) {
+            channel.close();
+        }
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
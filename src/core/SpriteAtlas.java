@@ -0,0 +1,386 @@
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.effect.Glow;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import java.util.function.Predicate;
+
+// Vehicles and traffic lights rendered once, glow included, into one image. Every frame then
+// draws them as plain image blits: no effect objects and no gc.setEffect per object.
+// Vehicles get one of PALETTE_SIZE colors; lights are baked per state, brightness and emergency.
+// Also holds the fixed colors of the dynamic layer, so neither renderer allocates them per frame.
+// Must be created on the JavaFX thread; rebuild it when night mode or the asset mode changes.
+public class SpriteAtlas {
+    public static final int PALETTE_SIZE = 12;
+    private static final int VEHICLE_SIZE = 10;
+    private static final int PADDING = 10;
+    static final int VEHICLE_CELL = 56; // body plus glow
+    static final int LIGHT_CELL = 64;
+    static final int DENSITY_STEPS = 20;
+    private static final Vehicle.VehicleType[] TYPES = Vehicle.VehicleType.values();
+    private static final TrafficLight.State[] LIGHT_STATES = {
+        TrafficLight.State.GREEN, TrafficLight.State.YELLOW, TrafficLight.State.RED
+    };
+    private static final double DIM_BRIGHTNESS = 0.3; // the two brightness levels a blinking light shows
+    private static final Color[] PALETTE = new Color[PALETTE_SIZE];
+    private static final Color[][] TRAIL_COLORS = new Color[PALETTE_SIZE][];
+    // [color][points][segment]: route trail segments fade in from the oldest point
+    private static final Color[][][] ROUTE_COLORS = new Color[PALETTE_SIZE][VehicleRenderState.TRAIL_LENGTH + 1][];
+    private static final Color[] DENSITY_COLORS = new Color[DENSITY_STEPS + 1];
+
+    static {
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            PALETTE[i] = Color.hsb(i * 360.0 / PALETTE_SIZE, 0.7, 0.95);
+            TRAIL_COLORS[i] = new Color[] {
+                PALETTE[i], PALETTE[i].deriveColor(0, 1, 1, 0.7), PALETTE[i].deriveColor(0, 1, 1, 0.4)
+            };
+            for (int points = 0; points <= VehicleRenderState.TRAIL_LENGTH; points++) {
+                ROUTE_COLORS[i][points] = new Color[points];
+                for (int segment = 0; segment < points; segment++) {
+                    ROUTE_COLORS[i][points][segment] = PALETTE[i].deriveColor(0, 1, 1, (segment + 1) * 0.5 / points);
+                }
+            }
+        }
+        // Green through yellow to red, more opaque as density rises
+        for (int step = 0; step <= DENSITY_STEPS; step++) {
+            double density = (double) step / DENSITY_STEPS;
+            DENSITY_COLORS[step] = Color.hsb(120 * (1 - density), 0.9, 0.9, 0.35 + 0.6 * density);
+        }
+    }
+
+    private final AssetManager assetManager;
+    private final boolean nightMode;
+    private final Predicate<String> useVehicleAsset;
+    private final Image image;
+    private final int lightRow; // first atlas row of the traffic light sprites
+    private final Color[] congestionColors; // light, medium, heavy
+    private int[] pixels; // image as premultiplied ARGB, read on first use
+
+    public SpriteAtlas(AssetManager assetManager, boolean nightMode, Predicate<String> useVehicleAsset) {
+        this.assetManager = assetManager;
+        this.nightMode = nightMode;
+        this.useVehicleAsset = useVehicleAsset;
+        congestionColors = nightMode
+            ? new Color[] { Color.rgb(200, 200, 0, 0.5), Color.rgb(200, 120, 0, 0.5), Color.rgb(200, 0, 0, 0.5) }
+            : new Color[] { Color.rgb(255, 255, 0, 0.3), Color.rgb(255, 165, 0, 0.3), Color.rgb(255, 0, 0, 0.3) };
+
+        // Rows: type x orientation, PALETTE_SIZE colors each; then one row of light sprites
+        int vehicleRows = TYPES.length * 2;
+        int lightSprites = LIGHT_STATES.length * 2 * 2;
+        lightRow = vehicleRows * VEHICLE_CELL;
+        int width = Math.max(PALETTE_SIZE * VEHICLE_CELL, lightSprites * LIGHT_CELL);
+        Canvas canvas = new Canvas(width, lightRow + LIGHT_CELL);
+        GraphicsContext g = canvas.getGraphicsContext2D();
+
+        for (Vehicle.VehicleType type : TYPES) {
+            for (int orientation = 0; orientation < 2; orientation++) {
+                for (int color = 0; color < PALETTE_SIZE; color++) {
+                    double x = color * VEHICLE_CELL + VEHICLE_CELL / 2.0;
+                    double y = (type.ordinal() * 2 + orientation) * VEHICLE_CELL + VEHICLE_CELL / 2.0;
+                    renderVehicle(g, type, PALETTE[color], orientation == 0, x, y);
+                }
+            }
+        }
+        for (int sprite = 0; sprite < lightSprites; sprite++) {
+            TrafficLight.State state = LIGHT_STATES[sprite / 4];
+            double brightness = (sprite & 2) != 0 ? DIM_BRIGHTNESS : 1.0;
+            boolean emergency = (sprite & 1) != 0;
+            renderTrafficLight(g, state, brightness, emergency,
+                sprite * LIGHT_CELL + LIGHT_CELL / 2.0, lightRow + LIGHT_CELL / 2.0);
+        }
+
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        WritableImage snapshot = new WritableImage(width, lightRow + LIGHT_CELL);
+        image = canvas.snapshot(parameters, snapshot);
+    }
+
+    // Palette entry of a vehicle slot; spread out so neighbouring slots differ
+    public static int vehicleColor(int slot) {
+        return slot * 7 % PALETTE_SIZE;
+    }
+
+    public static Color paletteColor(int color) {
+        return PALETTE[color];
+    }
+
+    // Speed line colors of a palette entry, from opaque to faint
+    public static Color[] trailColors(int color) {
+        return TRAIL_COLORS[color];
+    }
+
+    // Route trail color of a segment between points segment and segment + 1 of a trail
+    public static Color routeColor(int color, int segment, int points) {
+        return ROUTE_COLORS[color][points][segment];
+    }
+
+    // Color of a road (or cell) by vehicles per capacity
+    public static Color densityColor(int vehicles, int capacity) {
+        int step = capacity > 0 ? Math.min(DENSITY_STEPS, vehicles * DENSITY_STEPS / capacity) : 0;
+        return DENSITY_COLORS[step];
+    }
+
+    // Congestion tint of a road, or null below 20% of capacity
+    public Color congestionColor(double congestion) {
+        if (congestion >= 0.8) return congestionColors[2]; // Heavy congestion
+        if (congestion >= 0.5) return congestionColors[1]; // Medium congestion
+        if (congestion > 0.2) return congestionColors[0];  // Light congestion
+        return null;
+    }
+
+    // Color as one premultiplied ARGB int, the pixel format of getPixels
+    public static int toArgbPre(Color color) {
+        int alpha = (int) Math.round(color.getOpacity() * 255);
+        int red = (int) Math.round(color.getRed() * alpha);
+        int green = (int) Math.round(color.getGreen() * alpha);
+        int blue = (int) Math.round(color.getBlue() * alpha);
+        return alpha << 24 | red << 16 | green << 8 | blue;
+    }
+
+    // Draws a vehicle centred on (x, y)
+    public void drawVehicle(GraphicsContext gc, Vehicle.VehicleType type, int color, boolean horizontal,
+                            double x, double y) {
+        gc.drawImage(image, vehicleSourceX(color), vehicleSourceY(type, horizontal), VEHICLE_CELL, VEHICLE_CELL,
+            x - VEHICLE_CELL / 2.0, y - VEHICLE_CELL / 2.0, VEHICLE_CELL, VEHICLE_CELL);
+    }
+
+    // Draws a traffic light centred on (x, y); BLINKING is drawn as red
+    public void drawTrafficLight(GraphicsContext gc, TrafficLight.State state, double brightness,
+                                 boolean emergency, double x, double y) {
+        gc.drawImage(image, lightSourceX(state, brightness, emergency), lightRow, LIGHT_CELL, LIGHT_CELL,
+            x - LIGHT_CELL / 2.0, y - LIGHT_CELL / 2.0, LIGHT_CELL, LIGHT_CELL);
+    }
+
+    // Top-left corner of a sprite cell in the atlas image
+    int vehicleSourceX(int color) {
+        return color * VEHICLE_CELL;
+    }
+
+    int vehicleSourceY(Vehicle.VehicleType type, boolean horizontal) {
+        return (type.ordinal() * 2 + (horizontal ? 0 : 1)) * VEHICLE_CELL;
+    }
+
+    int lightSourceX(TrafficLight.State state, double brightness, boolean emergency) {
+        int stateIndex = state == TrafficLight.State.GREEN ? 0 : state == TrafficLight.State.YELLOW ? 1 : 2;
+        int sprite = stateIndex * 4 + (brightness < 0.65 ? 2 : 0) + (emergency ? 1 : 0);
+        return sprite * LIGHT_CELL;
+    }
+
+    int lightSourceY() {
+        return lightRow;
+    }
+
+    // Atlas image as premultiplied ARGB rows, for software rendering. First call on the JavaFX thread.
+    public synchronized int[] getPixels() {
+        if (pixels == null) {
+            pixels = new int[getWidth() * getHeight()];
+            image.getPixelReader().getPixels(0, 0, getWidth(), getHeight(),
+                PixelFormat.getIntArgbPreInstance(), pixels, 0, getWidth());
+        }
+        return pixels;
+    }
+
+    public int getWidth() {
+        return (int) image.getWidth();
+    }
+
+    public int getHeight() {
+        return (int) image.getHeight();
+    }
+
+    private static String getAssetNameForVehicleType(Vehicle.VehicleType type) {
+        switch (type) {
+            case CAR: return "car";
+            case TRUCK: return "truck";
+            case MOTORCYCLE: return "motorcycle";
+            case BUS: return "bus";
+            default: return "car";
+        }
+    }
+
+    private void renderVehicle(GraphicsContext g, Vehicle.VehicleType type, Color color, boolean horizontal,
+                               double x, double y) {
+        String assetName = getAssetNameForVehicleType(type);
+        Image vehicleImage = assetManager.getImage(assetName);
+        if (useVehicleAsset.test(assetName) && vehicleImage != null) {
+            renderVehicleWithAsset(g, vehicleImage, type, color, horizontal, x, y);
+        } else {
+            renderVehicleWithShapes(g, type, color, horizontal, x, y);
+        }
+    }
+
+    private void renderVehicleWithAsset(GraphicsContext g, Image vehicleImage, Vehicle.VehicleType type,
+                                        Color color, boolean horizontal, double x, double y) {
+        // Calculate vehicle size based on type
+        double size = VEHICLE_SIZE;
+        switch (type) {
+            case TRUCK: size *= 1.4; break;
+            case MOTORCYCLE: size *= 0.8; break;
+            case BUS: size *= 1.6; break;
+            default: size *= 1.0; break;
+        }
+
+        // Add glow effect
+        DropShadow glow = new DropShadow();
+        glow.setColor(color);
+        glow.setRadius(size * 0.8);
+        g.setEffect(glow);
+
+        // Rotate vertical vehicles
+        g.save();
+        g.translate(x, y);
+        g.rotate(horizontal ? 0 : 90);
+        g.drawImage(vehicleImage, -size/2, -size/2, size, size);
+        g.restore();
+        g.setEffect(null);
+    }
+
+    private void renderVehicleWithShapes(GraphicsContext g, Vehicle.VehicleType type, Color color,
+                                         boolean horizontal, double x, double y) {
+        DropShadow glow = new DropShadow();
+        glow.setColor(color);
+        glow.setRadius(VEHICLE_SIZE);
+
+        g.setEffect(glow);
+        g.setFill(color);
+
+        double size = VEHICLE_SIZE;
+
+        switch (type) {
+            case CAR:
+                // Car with direction indicator
+                g.fillOval(x - size/2, y - size/2, size, size);
+                g.setFill(Color.WHITE);
+                if (horizontal) {
+                    g.fillRect(x + size/4, y - 1, size/4, 2);
+                } else {
+                    g.fillRect(x - 1, y + size/4, 2, size/4);
+                }
+                break;
+            case TRUCK:
+                size *= 1.4;
+                // Truck with cab and trailer
+                g.fillRect(x - size/2, y - size/3, size, size*0.7);
+                g.setFill(color.darker());
+                g.fillRect(x + size/3, y - size/4, size/6, size/2);
+                break;
+            case MOTORCYCLE:
+                size *= 0.8;
+                // Motorcycle with rider silhouette
+                double[] xPoints = {x, x + size/2, x, x - size/2};
+                double[] yPoints = {y - size/2, y, y + size/2, y};
+                g.fillPolygon(xPoints, yPoints, 4);
+                g.setFill(Color.DARKGRAY);
+                g.fillOval(x - size/6, y - size/3, size/3, size/3);
+                break;
+            case BUS:
+                size *= 1.6;
+                // Bus with windows
+                g.fillRoundRect(x - size/2, y - size/3, size, size*0.6, 4, 4);
+                g.setFill(Color.LIGHTBLUE);
+                for (int i = 0; i < 3; i++) {
+                    double windowX = x - size/3 + i * size/4;
+                    g.fillRect(windowX, y - size/6, size/6, size/4);
+                }
+                break;
+        }
+
+        g.setEffect(null);
+    }
+
+    private static String getTrafficLightAssetName(TrafficLight.State state) {
+        switch (state) {
+            case GREEN: return "traffic_light_green";
+            case YELLOW: return "traffic_light_yellow";
+            case RED: return "traffic_light_red";
+            default: return "traffic_light_red";
+        }
+    }
+
+    private void renderTrafficLight(GraphicsContext g, TrafficLight.State state, double brightness,
+                                    boolean emergency, double x, double y) {
+        String assetName = getTrafficLightAssetName(state);
+        Image lightImage = assetManager.getImage(assetName);
+        if (lightImage != null && assetManager.hasImage(assetName)) {
+            renderTrafficLightWithAsset(g, lightImage, brightness, emergency, x, y);
+        } else {
+            renderTrafficLightWithShapes(g, state, brightness, emergency, x, y);
+        }
+    }
+
+    private void renderTrafficLightWithAsset(GraphicsContext g, Image lightImage, double brightness,
+                                             boolean emergency, double x, double y) {
+        if (emergency) {
+            DropShadow emergencyEffect = new DropShadow();
+            emergencyEffect.setColor(Color.YELLOW);
+            emergencyEffect.setRadius(PADDING * 2);
+            emergencyEffect.setSpread(0.7);
+            g.setEffect(emergencyEffect);
+        } else {
+            Glow glow = new Glow();
+            glow.setLevel(0.8 * brightness);
+            g.setEffect(glow);
+        }
+
+        double size = PADDING * 2;
+        g.drawImage(lightImage, x - size/2, y - size/2, size, size);
+        g.setEffect(null);
+    }
+
+    private void renderTrafficLightWithShapes(GraphicsContext g, TrafficLight.State state, double brightness,
+                                              boolean emergency, double x, double y) {
+        Color color;
+        switch (state) {
+            case GREEN -> color = Color.rgb(0, 255, 0);
+            case YELLOW -> color = Color.rgb(255, 255, 0);
+            default -> color = Color.rgb(255, 0, 0);
+        }
+
+        // Brightness adjustment for blinking effect
+        color = color.deriveColor(0, 1.0, brightness, 1.0);
+
+        // Traffic light housing (background)
+        g.setFill(nightMode ? Color.rgb(30, 30, 30) : Color.rgb(60, 60, 60));
+        g.fillRoundRect(x - PADDING, y - PADDING * 1.5, PADDING * 2, PADDING * 3, 4, 4);
+
+        // All three light positions
+        double lightRadius = PADDING * 0.3;
+        g.setFill(state == TrafficLight.State.RED ? color : Color.rgb(80, 0, 0));
+        g.fillOval(x - lightRadius, y - PADDING, lightRadius * 2, lightRadius * 2);
+        g.setFill(state == TrafficLight.State.YELLOW ? color : Color.rgb(80, 80, 0));
+        g.fillOval(x - lightRadius, y - lightRadius, lightRadius * 2, lightRadius * 2);
+        g.setFill(state == TrafficLight.State.GREEN ? color : Color.rgb(0, 80, 0));
+        g.fillOval(x - lightRadius, y, lightRadius * 2, lightRadius * 2);
+
+        if (emergency) {
+            DropShadow emergencyEffect = new DropShadow();
+            emergencyEffect.setColor(Color.YELLOW);
+            emergencyEffect.setRadius(PADDING);
+            emergencyEffect.setSpread(0.7);
+            g.setEffect(emergencyEffect);
+        } else {
+            Glow glow = new Glow();
+            glow.setLevel(0.8 * brightness);
+            g.setEffect(glow);
+        }
+
+        // Redraw the active light with glow
+        g.setFill(color);
+        switch (state) {
+            case RED -> g.fillOval(x - lightRadius, y - PADDING, lightRadius * 2, lightRadius * 2);
+            case YELLOW -> g.fillOval(x - lightRadius, y - lightRadius, lightRadius * 2, lightRadius * 2);
+            case GREEN -> g.fillOval(x - lightRadius, y, lightRadius * 2, lightRadius * 2);
+            default -> { }
+        }
+        g.setEffect(null);
+
+        // Housing outline
+        g.setStroke(nightMode ? Color.rgb(100, 100, 100) : Color.BLACK);
+        g.setLineWidth(1);
+        g.strokeRoundRect(x - PADDING, y - PADDING * 1.5, PADDING * 2, PADDING * 3, 4, 4);
+    }
+}
@@ -1,31 +1,62 @@
-import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
 public class TrafficLight extends Thread {
     public enum State { GREEN, YELLOW, RED, BLINKING }
-    private State state = State.RED;
+    // Volatile so vehicles and the GUI read the light without taking its lock
+    private volatile State state = State.RED;
     private final Road road;
-    private static final AtomicInteger activeGreenLights = new AtomicInteger(0);
-    private static final int MAX_CONCURRENT_GREEN = 2;
-    private static final Random random = new Random();
+    // The city's cap on lights green at once
+    private final GreenSlots greenSlots;
+    // This light's own stream; drawn from by its thread, its stepping engine or its SignalController
+    private final SplittableRandom random;
     
     // Timing constants
     private static final int MIN_GREEN_TIME = 3000;  // 3 seconds
     private static final int MAX_GREEN_TIME = 8000;  // 8 seconds
-    private static final int YELLOW_TIME = 2000;     // 2 seconds
+    static final int YELLOW_TIME = 2000;             // 2 seconds
     private static final int MIN_RED_TIME = 3000;    // 3 seconds
     private static final int MAX_RED_TIME = 7000;    // 7 seconds
     
     // Visual properties
-    private double brightness = 1.0;
-    private boolean isBlinking = false;
+    private volatile double brightness = 1.0;
+    private volatile boolean isBlinking = false;
     private long lastStateChangeTime;
     private long blinkInterval = 500; // milliseconds
-    private boolean emergencyMode = false;
+    private volatile boolean emergencyMode = false;
+    private final SimulationClock clock;
+    // ReentrantLock rather than synchronized so virtual threads never pin on a light
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled when the light turns green; only vehicles queued behind this light wait on it
+    private final Condition green = lock.newCondition();
+    private List<Runnable> greenListeners = new ArrayList<>();
+    
+    // Fixed-step mode state, driven by SimulationEngine instead of run()
+    private enum StepPhase { CYCLE_START, WAIT_FOR_SLOT, GREEN, YELLOW, RED, EMERGENCY }
+    private StepPhase stepPhase = StepPhase.CYCLE_START;
+    private long phaseEnd = Long.MIN_VALUE;
+    private int pendingGreenTime;
+    private int emergencyFlashes;
+    private boolean holdsGreenSlot = false;
 
     public TrafficLight(Road road) {
+        this(road, SimulationClock.SYSTEM);
+    }
+
+    public TrafficLight(Road road, SimulationClock clock) {
+        this(road, clock, new SplittableRandom(), new GreenSlots());
+    }
+
+    public TrafficLight(Road road, SimulationClock clock, SplittableRandom random, GreenSlots greenSlots) {
         this.road = road;
-        this.lastStateChangeTime = System.currentTimeMillis();
+        this.clock = clock;
+        this.random = random;
+        this.greenSlots = greenSlots;
+        this.lastStateChangeTime = clock.currentTimeMillis();
     }
 
     @Override
@@ -44,25 +75,24 @@ public class TrafficLight extends Thread {
                 int greenTime = calculateGreenTime();
                 
                 // Wait if too many green lights are active
-                while (activeGreenLights.get() >= MAX_CONCURRENT_GREEN) {
-                    Thread.sleep(500);
+                greenSlots.acquire();
+                try {
+                    // Switch to green
+                    setState(State.GREEN);
+                    Thread.sleep(greenTime);
                     if (Thread.currentThread().isInterrupted()) return;
-                }
 
-                // Switch to green
-                activeGreenLights.incrementAndGet();
-                setState(State.GREEN);
-                Thread.sleep(greenTime);
-                if (Thread.currentThread().isInterrupted()) return;
-
-                // Switch to yellow
-                setState(State.YELLOW);
-                Thread.sleep(YELLOW_TIME);
-                if (Thread.currentThread().isInterrupted()) return;
+                    // Switch to yellow
+                    setState(State.YELLOW);
+                    Thread.sleep(YELLOW_TIME);
+                    if (Thread.currentThread().isInterrupted()) return;
 
-                // Switch to red
-                setState(State.RED);
-                activeGreenLights.decrementAndGet();
+                    // Switch to red
+                    setState(State.RED);
+                } finally {
+                    // Also when interrupted while green, so the slot is never lost
+                    greenSlots.release();
+                }
                 Thread.sleep(calculateRedTime());
 
             } catch (InterruptedException e) {
@@ -73,7 +103,7 @@ public class TrafficLight extends Thread {
     }
     
     private void handleEmergencyMode() throws InterruptedException {
-        System.out.println("Emergency mode activated for traffic light on road " + road.getId());
+        EventLog.log(clock, EventLog.Kind.LIGHT_EMERGENCY, null, road.getId());
         
         // Blink yellow for emergency
         for (int i = 0; i < 10; i++) {
@@ -86,7 +116,102 @@ public class TrafficLight extends Thread {
         }
     }
 
-    private int calculateGreenTime() {
+    // Runs the same cycle as run() without blocking; now is the simulated time in ms.
+    // Returns the time of the next phase change.
+    public long step(long now) {
+        return step(now, false);
+    }
+
+    // With grantLater the light does not take a green slot itself: it stops at WAIT_FOR_SLOT and
+    // the caller calls grantGreenSlot once no other thread is stepping this city's lights.
+    long step(long now, boolean grantLater) {
+        while (now >= phaseEnd) {
+            switch (stepPhase) {
+                case CYCLE_START -> {
+                    // Check for emergency mode (rare random event)
+                    if (random.nextDouble() < 0.01 && !emergencyMode) {
+                        emergencyMode = true;
+                        EventLog.log(clock, EventLog.Kind.LIGHT_EMERGENCY, null, road.getId());
+                        emergencyFlashes = 0;
+                        setState(State.YELLOW);
+                        stepPhase = StepPhase.EMERGENCY;
+                        phaseEnd = now + 300;
+                    } else {
+                        pendingGreenTime = calculateGreenTime();
+                        stepPhase = StepPhase.WAIT_FOR_SLOT;
+                        phaseEnd = now;
+                    }
+                }
+                case WAIT_FOR_SLOT -> {
+                    if (grantLater) {
+                        phaseEnd = Long.MAX_VALUE;
+                    } else {
+                        grantGreenSlot(now);
+                    }
+                }
+                case GREEN -> {
+                    setState(State.YELLOW);
+                    stepPhase = StepPhase.YELLOW;
+                    phaseEnd = now + YELLOW_TIME;
+                }
+                case YELLOW -> {
+                    setState(State.RED);
+                    releaseGreenSlot();
+                    stepPhase = StepPhase.RED;
+                    phaseEnd = now + calculateRedTime();
+                }
+                case RED -> {
+                    stepPhase = StepPhase.CYCLE_START;
+                    phaseEnd = now;
+                }
+                case EMERGENCY -> {
+                    // Blink yellow for emergency: 10 yellow/blinking pairs
+                    emergencyFlashes++;
+                    if (emergencyFlashes == 20) {
+                        emergencyMode = false;
+                        stepPhase = StepPhase.CYCLE_START;
+                        phaseEnd = now;
+                    } else {
+                        setState(emergencyFlashes % 2 == 1 ? State.BLINKING : State.YELLOW);
+                        phaseEnd = now + 300;
+                    }
+                }
+            }
+        }
+        return phaseEnd;
+    }
+    
+    // Gives back a green slot still held when a stepped simulation is stopped
+    public void stopStepping() {
+        releaseGreenSlot();
+    }
+    
+    // True while a step(now, true) is waiting for grantGreenSlot
+    boolean isWaitingForGreenSlot() {
+        return stepPhase == StepPhase.WAIT_FOR_SLOT && phaseEnd == Long.MAX_VALUE;
+    }
+
+    // Turns green if a slot is free, or tries again in 500 ms; returns the next phase change
+    long grantGreenSlot(long now) {
+        if (greenSlots.tryAcquire()) {
+            holdsGreenSlot = true;
+            setState(State.GREEN);
+            stepPhase = StepPhase.GREEN;
+            phaseEnd = now + pendingGreenTime;
+        } else {
+            phaseEnd = now + 500;
+        }
+        return phaseEnd;
+    }
+    
+    private void releaseGreenSlot() {
+        if (holdsGreenSlot) {
+            holdsGreenSlot = false;
+            greenSlots.release();
+        }
+    }
+
+    int calculateGreenTime() {
         int vehicleCount = road.getVehicleCount();
         int baseTime = MIN_GREEN_TIME;
         
@@ -99,7 +224,7 @@ public class TrafficLight extends Thread {
         return Math.max(MIN_GREEN_TIME, Math.min(baseTime, MAX_GREEN_TIME));
     }
 
-    private int calculateRedTime() {
+    int calculateRedTime() {
         int baseTime = MIN_RED_TIME;
         
         // Add traffic-dependent variation
@@ -118,35 +243,117 @@ public class TrafficLight extends Thread {
         return Math.max(MIN_RED_TIME, Math.min(baseTime, MAX_RED_TIME));
     }
 
-    public synchronized State getTrafficLightState() {
-        // Handle blinking effect
-        if (isBlinking) {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - lastStateChangeTime > blinkInterval) {
-                brightness = (brightness < 0.5) ? 1.0 : 0.3;
-                lastStateChangeTime = currentTime;
+    public State getTrafficLightState() {
+        // Lock-free unless blinking, which also animates the brightness
+        State current = state;
+        if (current != State.BLINKING && !isBlinking) {
+            return current;
+        }
+        lock.lock();
+        try {
+            // Handle blinking effect
+            if (isBlinking) {
+                long currentTime = clock.currentTimeMillis();
+                if (currentTime - lastStateChangeTime > blinkInterval) {
+                    brightness = (brightness < 0.5) ? 1.0 : 0.3;
+                    lastStateChangeTime = currentTime;
+                }
+                return state == State.BLINKING ? State.YELLOW : state;
             }
-            return state == State.BLINKING ? State.YELLOW : state;
+            return state;
+        } finally {
+            lock.unlock();
         }
-        return state;
     }
     
-    public synchronized double getBrightness() {
+    public double getBrightness() {
         return brightness;
     }
     
-    public synchronized boolean isEmergencyMode() {
+    public boolean isEmergencyMode() {
         return emergencyMode;
     }
 
-    private synchronized void setState(State newState) {
-        this.state = newState;
-        this.lastStateChangeTime = System.currentTimeMillis();
-        
-        // Set blinking state
-        isBlinking = (newState == State.BLINKING);
+    // Used by SignalController, which runs the cycle for lights it controls
+    void applyState(State newState) {
+        setState(newState);
+    }
+
+    SplittableRandom getRandom() {
+        return random;
+    }
+
+    void setEmergencyMode(boolean emergencyMode) {
+        this.emergencyMode = emergencyMode;
+    }
+
+    private void setState(State newState) {
+        List<Runnable> listeners = null;
+        lock.lock();
+        try {
+            this.state = newState;
+            this.lastStateChangeTime = clock.currentTimeMillis();
+            
+            // Set blinking state
+            isBlinking = (newState == State.BLINKING);
+
+            if (newState == State.GREEN) {
+                green.signalAll();
+                if (!greenListeners.isEmpty()) {
+                    listeners = greenListeners;
+                    greenListeners = new ArrayList<>();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (listeners != null) {
+            listeners.forEach(Runnable::run);
+        }
         
-        System.out.println("Traffic light on road " + road.getId() + " changed to: " + newState);
+        EventLog.log(clock, EventLog.Kind.LIGHT_CHANGED, null, road.getId(), 0, newState);
+    }
+
+    // Blocks until the light is green or keepWaiting turns false. Whoever flips keepWaiting
+    // must call wakeWaiters() afterwards so the waiter re-checks it.
+    public void awaitGreen(BooleanSupplier keepWaiting) throws InterruptedException {
+        lock.lock();
+        try {
+            while (state != State.GREEN && keepWaiting.getAsBoolean()) {
+                green.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void wakeWaiters() {
+        lock.lock();
+        try {
+            green.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Runs listener once, the next time the light turns green (right away if it already is).
+    // Listeners run on the thread that switched the light, outside the lock.
+    public void addGreenListener(Runnable listener) {
+        lock.lock();
+        try {
+            if (state != State.GREEN) {
+                greenListeners.add(listener);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        listener.run();
+    }
+
+    // One light per road, so lights share their road's index
+    public int getIndex() {
+        return road.getIndex();
     }
 
     public String getLightId() {
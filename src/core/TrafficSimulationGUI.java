@@ -8,88 +8,78 @@ import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.animation.AnimationTimer;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.effect.Glow;
-import javafx.scene.effect.Light;
-import javafx.scene.effect.Lighting;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.image.Image;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.ArrayList;
-import java.util.List;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import java.io.File;
+import java.io.IOException;
+import javax.management.JMException;
 
 public class TrafficSimulationGUI extends Application {
     private static final int CELL_SIZE = 60;
     private static final int PADDING = 10;
     private static final int VEHICLE_SIZE = 10;
+    private static final int VIEW_SIZE = 600; // initial size of the map view
+    private static final double ZOOM_PER_WHEEL_PIXEL = 1.005;
+    // Zoom below which vehicles are drawn as per-road density, and below that as a heatmap
+    private static final double DENSITY_SCALE = 0.4;
+    private static final double HEATMAP_SCALE = 0.12;
+    private static final long STATS_INTERVAL_NANOS = 250_000_000L; // stats text is rebuilt at most this often
+    private static final double[] REPLAY_SPEEDS = { 0.25, 1, 4, 16, 64, 256 };
+    private Pane mapPane;
     private Canvas canvas;
     private GraphicsContext gc;
+    private Canvas staticCanvas; // under canvas: background, roads and intersections
+    private ImageView rasterView; // replaces canvas while the background renderer runs
+    private boolean pixelRenderer = false; // rasterize off the FX thread into a PixelBuffer
+    private RasterRenderer rasterRenderer; // running while pixelRenderer is on
+    private PixelRasterizer.View lastRasterView; // view last handed to rasterRenderer
+    private boolean staticLayerValid = false;
     private CityMap cityMap;
+    private FrameSource snapshots; // frames of cityMap or of the replayed journal; the FX thread reads nothing else
+    private JournalPlayer player; // replaying a journal instead of simulating, else null
+    private CityFrame frame; // taken at the start of each pulse
+    private RoadGeometry geometry; // pixel layout of cityMap, rebuilt with it
+    private Viewport viewport;
+    private double dragX, dragY;
+    // Grid cells intersecting the viewport; only these are drawn and animated
+    private int firstVisibleRow, lastVisibleRow, firstVisibleColumn, lastVisibleColumn;
+    private DetailLevel detailLevel = DetailLevel.VEHICLES;
+    private WritableImage heatmap; // one pixel per grid cell, sized with geometry
+    private SpriteAtlas spriteAtlas; // rebuilt lazily when night mode or the asset mode changes
     private int gridSize = 5;
     private int vehicleCount = 10;
     private double simulationSpeed = 1.0;
-    private Map<String, VehicleInfo> vehicleInfoMap = new HashMap<>();
+    private final VehicleRenderState vehicleState = new VehicleRenderState(); // indexed by VehicleStore slot
     private Label statsLabel;
+    private final CityFrame shownFigures = new CityFrame(); // figures behind the stats text
+    private int shownCarriers = Integer.MIN_VALUE;
+    private long lastStatsUpdate = 0;
     private boolean showRoutes = true;
     private boolean nightMode = false;
     private AssetManager assetManager;
+    private Label replayLabel;
+    private Slider timelineSlider; // seconds since the start of the journal
+    private Button replayButton;
+    private Button replaySpeedButton;
+    private int replaySpeedIndex = 1;
+    private boolean updatingTimeline = false; // set while the pulse moves the slider
+    private long lastTimelineUpdate = 0;
     private String assetMode = "AUTO"; // AUTO, FORCE, DISABLE
-    
-    private static class VehicleInfo {
-        double x, y;
-        double targetX, targetY;
-        double velocityX, velocityY;
-        Color color;
-        List<double[]> routePoints = new ArrayList<>();
-        
-        VehicleInfo(double x, double y) {
-            this.x = x;
-            this.y = y;
-            this.targetX = x;
-            this.targetY = y;
-            this.color = Color.rgb(
-                (int)(Math.random() * 200 + 55),
-                (int)(Math.random() * 200 + 55),
-                (int)(Math.random() * 200 + 55)
-            );
-        }
-        
-        void updatePosition(double elapsedTime, double speed) {
-            // Smooth movement with easing
-            double dx = targetX - x;
-            double dy = targetY - y;
-            
-            // Calculate velocity with easing
-            double easing = 5.0 * speed;
-            velocityX = dx * easing * elapsedTime;
-            velocityY = dy * easing * elapsedTime;
-            
-            // Apply velocity
-            x += velocityX;
-            y += velocityY;
-        }
-        
-        void setTarget(double x, double y) {
-            this.targetX = x;
-            this.targetY = y;
-        }
-        
-        void addRoutePoint(double x, double y) {
-            routePoints.add(new double[]{x, y});
-            // Keep only last 5 points
-            if (routePoints.size() > 5) {
-                routePoints.remove(0);
-            }
-        }
-    }
+    private CityMap.ExecutionMode executionMode = CityMap.ExecutionMode.THREADS;
+    private CityMap.SignalMode signalMode = CityMap.SignalMode.CONTROLLER;
+    private CityMap.RouteMode routeMode = CityMap.RouteMode.RANDOM_STEPS;
     
     @Override
     public void start(Stage primaryStage) {
@@ -106,14 +96,22 @@ public class TrafficSimulationGUI extends Application {
         VBox statsPanel = createStatsPanel();
         root.setBottom(statsPanel);
         
-        // Create canvas
-        canvas = new Canvas(gridSize * CELL_SIZE * 2, gridSize * CELL_SIZE * 2);
+        // Create canvases; they fill the centre and show the map through the viewport
+        canvas = new Canvas(VIEW_SIZE, VIEW_SIZE);
         gc = canvas.getGraphicsContext2D();
-        root.setCenter(canvas);
+        staticCanvas = new Canvas(VIEW_SIZE, VIEW_SIZE);
+        rasterView = new ImageView();
+        rasterView.setVisible(false);
+        mapPane = new Pane(staticCanvas, canvas, rasterView);
+        mapPane.setPrefSize(VIEW_SIZE, VIEW_SIZE);
+        mapPane.widthProperty().addListener((obs, oldVal, newVal) -> updateCanvasSize());
+        mapPane.heightProperty().addListener((obs, oldVal, newVal) -> updateCanvasSize());
+        root.setCenter(mapPane);
+        viewport = new Viewport(VIEW_SIZE, VIEW_SIZE);
+        installViewControls();
         
         // Start simulation
-        cityMap = new CityMap();
-        cityMap.setupGridCity(gridSize, vehicleCount);
+        createCity();
         
         // Start animation timer
         startAnimation();
@@ -125,6 +123,7 @@ public class TrafficSimulationGUI extends Application {
         
         // Stop threads when window is closed
         primaryStage.setOnCloseRequest(e -> {
+            snapshots.stop();
             cityMap.stopSimulation();
             Platform.exit();
             System.exit(0);
@@ -144,15 +143,14 @@ public class TrafficSimulationGUI extends Application {
         
         // Grid size control
         Label gridLabel = new Label("Grid Size: " + gridSize);
-        Slider gridSlider = new Slider(3, 10, gridSize);
+        Slider gridSlider = new Slider(3, 100, gridSize);
         gridSlider.setShowTickLabels(true);
         gridSlider.setShowTickMarks(true);
-        gridSlider.setMajorTickUnit(1);
+        gridSlider.setMajorTickUnit(25);
         gridSlider.setBlockIncrement(1);
         gridSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
             gridSize = newVal.intValue();
             gridLabel.setText("Grid Size: " + gridSize);
-            updateCanvasSize();
         });
         
         // Vehicle count control
@@ -189,32 +187,54 @@ public class TrafficSimulationGUI extends Application {
         HBox buttons = new HBox(10, startButton, pauseButton, resetButton);
         buttons.setAlignment(Pos.CENTER);
         
+        // Execution mode, applied on the next Start/Reset
+        Button engineButton = new Button("Engine: " + executionMode);
+        engineButton.setStyle("-fx-background-color: #009688; -fx-text-fill: white;");
+        engineButton.setOnAction(e -> {
+            CityMap.ExecutionMode[] modes = CityMap.ExecutionMode.values();
+            executionMode = modes[(executionMode.ordinal() + 1) % modes.length];
+            engineButton.setText("Engine: " + executionMode);
+        });
+        
+        Button signalsButton = new Button("Signals: " + signalMode);
+        signalsButton.setStyle("-fx-background-color: #009688; -fx-text-fill: white;");
+        signalsButton.setOnAction(e -> {
+            CityMap.SignalMode[] modes = CityMap.SignalMode.values();
+            signalMode = modes[(signalMode.ordinal() + 1) % modes.length];
+            signalsButton.setText("Signals: " + signalMode);
+        });
+        
+        Button routingButton = new Button("Routing: " + routeMode);
+        routingButton.setStyle("-fx-background-color: #009688; -fx-text-fill: white;");
+        routingButton.setOnAction(e -> {
+            CityMap.RouteMode[] modes = CityMap.RouteMode.values();
+            routeMode = modes[(routeMode.ordinal() + 1) % modes.length];
+            routingButton.setText("Routing: " + routeMode);
+        });
+        HBox modeButtons = new HBox(10, engineButton, signalsButton, routingButton);
+        modeButtons.setAlignment(Pos.CENTER);
+        
         startButton.setOnAction(e -> {
-            cityMap.stopSimulation();
-            vehicleInfoMap.clear();
-            cityMap = new CityMap();
-            cityMap.setupGridCity(gridSize, vehicleCount);
+            createCity();
             cityMap.startSimulation();
         });
         
         pauseButton.setOnAction(e -> {
+            if (player != null) {
+                return; // the replay has its own button; its city never runs
+            }
             if (pauseButton.getText().equals("Pause")) {
-                cityMap.stopSimulation();
+                cityMap.pauseSimulation();
                 pauseButton.setText("Resume");
                 pauseButton.setStyle("-fx-background-color: #FF9800; -fx-text-fill: white;");
             } else {
-                cityMap.startSimulation();
+                cityMap.resumeSimulation();
                 pauseButton.setText("Pause");
                 pauseButton.setStyle("-fx-background-color: #2196F3; -fx-text-fill: white;");
             }
         });
         
-        resetButton.setOnAction(e -> {
-            cityMap.stopSimulation();
-            vehicleInfoMap.clear();
-            cityMap = new CityMap();
-            cityMap.setupGridCity(gridSize, vehicleCount);
-        });
+        resetButton.setOnAction(e -> createCity());
         
         // Visual options
         HBox visualOptions = new HBox(10);
@@ -252,9 +272,12 @@ public class TrafficSimulationGUI extends Application {
         nightModeButton.setOnAction(e -> {
             nightMode = !nightMode;
             nightModeButton.setText("Night Mode: " + (nightMode ? "ON" : "OFF"));
+            invalidateStaticLayer();
+            spriteAtlas = null;
             nightModeButton.setStyle(nightMode ? 
                 "-fx-background-color: #3F51B5; -fx-text-fill: white;" : 
                 "-fx-background-color: #9C27B0; -fx-text-fill: white;");
+            restartRasterRenderer(); // new atlas
         });
         
         showRoutesButton.setOnAction(e -> {
@@ -267,6 +290,8 @@ public class TrafficSimulationGUI extends Application {
         
         assetModeButton.setOnAction(e -> {
             // Toggle through different asset modes: AUTO -> FORCE -> DISABLE -> AUTO
+            invalidateStaticLayer();
+            spriteAtlas = null;
             String currentText = assetModeButton.getText();
             if (currentText.contains("AUTO")) {
                 assetMode = "FORCE";
@@ -281,25 +306,212 @@ public class TrafficSimulationGUI extends Application {
                 assetModeButton.setText("Assets: AUTO");
                 assetModeButton.setStyle("-fx-background-color: #FF9800; -fx-text-fill: white;");
             }
+            restartRasterRenderer(); // new atlas
         });
         
         visualOptions.getChildren().addAll(routesButton, toggleButtons, assetControls);
         
+        // Mouse wheel zooms and dragging pans the map; this shows all of it again
+        Button fitViewButton = new Button("Fit View");
+        fitViewButton.setStyle("-fx-background-color: #607D8B; -fx-text-fill: white;");
+        fitViewButton.setOnAction(e -> fitView());
+        
+        // Canvas draws on the FX thread; Pixel rasterizes on a background thread into a PixelBuffer
+        Button rendererButton = new Button("Renderer: Canvas");
+        rendererButton.setStyle("-fx-background-color: #607D8B; -fx-text-fill: white;");
+        rendererButton.setOnAction(e -> {
+            pixelRenderer = !pixelRenderer;
+            rendererButton.setText("Renderer: " + (pixelRenderer ? "Pixel" : "Canvas"));
+            restartRasterRenderer();
+        });
+        HBox viewButtons = new HBox(10, fitViewButton, rendererButton);
+        viewButtons.setAlignment(Pos.CENTER);
+        
+        // Replay of a journal recorded with HeadlessRunner --journal; Start or Reset simulates again
+        replayLabel = new Label("Replay: no journal");
+        Button openJournalButton = new Button("Open Journal");
+        openJournalButton.setStyle("-fx-background-color: #795548; -fx-text-fill: white;");
+        openJournalButton.setOnAction(e -> openJournal());
+        
+        replayButton = new Button("Play");
+        replayButton.setStyle("-fx-background-color: #2196F3; -fx-text-fill: white;");
+        replayButton.setOnAction(e -> {
+            if (player != null) {
+                player.setPlaying(!player.isPlaying());
+                lastTimelineUpdate = 0;
+            }
+        });
+        
+        replaySpeedButton = new Button("Speed: " + formatReplaySpeed());
+        replaySpeedButton.setStyle("-fx-background-color: #607D8B; -fx-text-fill: white;");
+        replaySpeedButton.setOnAction(e -> {
+            replaySpeedIndex = (replaySpeedIndex + 1) % REPLAY_SPEEDS.length;
+            replaySpeedButton.setText("Speed: " + formatReplaySpeed());
+            if (player != null) {
+                player.setSpeed(REPLAY_SPEEDS[replaySpeedIndex]);
+            }
+        });
+        HBox replayButtons = new HBox(10, openJournalButton, replayButton, replaySpeedButton);
+        replayButtons.setAlignment(Pos.CENTER);
+        
+        // Dragging or clicking the timeline jumps there; vehicles snap instead of gliding over
+        timelineSlider = new Slider(0, 1, 0);
+        timelineSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (player != null && !updatingTimeline) {
+                player.seek(player.getStartTime() + (long) (newVal.doubleValue() * 1000));
+                hideVehicles();
+                lastTimelineUpdate = 0;
+            }
+        });
+        updateReplayControls();
+        
         panel.getChildren().addAll(
             titleLabel,
             new Separator(),
             gridLabel, gridSlider,
             vehicleLabel, vehicleSlider,
             speedLabel, speedSlider,
+            modeButtons,
             new Separator(),
             buttons,
             new Separator(),
-            visualOptions
+            visualOptions,
+            viewButtons,
+            new Separator(),
+            replayLabel, replayButtons, timelineSlider
         );
         
         return panel;
     }
     
+    // Replaces the city (stopping the old one, or the replay) with a new one built from the current settings
+    private void createCity() {
+        stopCity();
+        cityMap = new CityMap();
+        cityMap.setExecutionMode(executionMode);
+        cityMap.setSignalMode(signalMode);
+        cityMap.setRouteMode(routeMode);
+        cityMap.setupGridCity(gridSize, vehicleCount);
+        try {
+            cityMap.getMetrics().registerMBean("gui"); // replaces the previous city's
+        } catch (JMException e) {
+            System.err.println("Could not register metrics MBean: " + e.getMessage());
+        }
+        geometry = RoadGeometry.forGrid(cityMap, CELL_SIZE, PADDING);
+        heatmap = null;
+        SnapshotPublisher publisher = new SnapshotPublisher(cityMap);
+        publisher.start(SnapshotPublisher.DEFAULT_INTERVAL_MILLIS);
+        snapshots = publisher;
+        frame = snapshots.latest();
+        fitView();
+        restartRasterRenderer();
+    }
+    
+    // Stops the background renderer, the frame source and the city they show
+    private void stopCity() {
+        if (cityMap != null) {
+            if (rasterRenderer != null) {
+                rasterRenderer.stop();
+                rasterRenderer = null;
+            }
+            snapshots.stop();
+            cityMap.stopSimulation();
+        }
+        player = null;
+        updateReplayControls();
+        vehicleState.clear();
+    }
+    
+    // Lets the user pick a journal and replays it in place of the simulation once it is read,
+    // which happens on a background thread since a long run takes a while to index
+    private void openJournal() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Open Journal");
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Traffic journals", "*.tsj"),
+            new FileChooser.ExtensionFilter("All files", "*.*"));
+        File file = chooser.showOpenDialog(mapPane.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        replayLabel.setText("Replay: loading " + file.getName());
+        Thread loader = new Thread(() -> {
+            try {
+                JournalPlayer journal = new JournalPlayer(file.toPath());
+                Platform.runLater(() -> startReplay(journal, file.getName()));
+            } catch (IOException | RuntimeException e) {
+                Platform.runLater(() -> replayLabel.setText("Replay: " + e.getMessage()));
+            }
+        }, "journal-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+    
+    private void startReplay(JournalPlayer journal, String name) {
+        stopCity();
+        // An idle city of the same grid supplies the layout; it is never started
+        cityMap = new CityMap();
+        cityMap.setupGrid(journal.getGridSize());
+        if (cityMap.getRoads().size() != journal.getRoadCount()) {
+            journal.stop();
+            createCity();
+            replayLabel.setText("Replay: " + name + " does not match the grid layout");
+            return;
+        }
+        player = journal;
+        geometry = RoadGeometry.forGrid(cityMap, CELL_SIZE, PADDING);
+        heatmap = null;
+        snapshots = journal;
+        journal.setSpeed(REPLAY_SPEEDS[replaySpeedIndex]);
+        journal.setPlaying(true);
+        frame = journal.latest();
+        updateReplayControls();
+        fitView();
+        restartRasterRenderer();
+    }
+    
+    private void updateReplayControls() {
+        if (replayLabel == null) {
+            return; // control panel not built yet
+        }
+        replayButton.setDisable(player == null);
+        timelineSlider.setDisable(player == null);
+        updatingTimeline = true;
+        timelineSlider.setMax(player != null ? Math.max(1, (player.getEndTime() - player.getStartTime()) / 1000.0) : 1);
+        timelineSlider.setValue(0);
+        updatingTimeline = false;
+        if (player == null) {
+            replayLabel.setText("Replay: no journal");
+            replayButton.setText("Play");
+        }
+        lastTimelineUpdate = 0;
+    }
+    
+    // Moves the timeline along with the replay clock, unless the user is dragging it
+    private void updateTimeline(long now) {
+        if (player == null || timelineSlider.isValueChanging() || now - lastTimelineUpdate < STATS_INTERVAL_NANOS) {
+            return;
+        }
+        lastTimelineUpdate = now;
+        long elapsed = player.currentTime() - player.getStartTime();
+        updatingTimeline = true;
+        timelineSlider.setValue(elapsed / 1000.0);
+        updatingTimeline = false;
+        replayLabel.setText("Replay: " + formatMillis(elapsed) + " / "
+            + formatMillis(player.getEndTime() - player.getStartTime()));
+        replayButton.setText(player.isPlaying() ? "Pause" : "Play");
+    }
+    
+    private static String formatMillis(long millis) {
+        long seconds = millis / 1000;
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+    
+    private String formatReplaySpeed() {
+        double speed = REPLAY_SPEEDS[replaySpeedIndex];
+        return speed < 1 ? speed + "x" : (int) speed + "x";
+    }
+    
     private class Separator extends HBox {
         public Separator() {
             super();
@@ -319,9 +531,113 @@ public class TrafficSimulationGUI extends Application {
         return panel;
     }
     
+    // Canvases follow the size of the map pane; the map itself is scaled by the viewport
     private void updateCanvasSize() {
-        canvas.setWidth(gridSize * CELL_SIZE * 2);
-        canvas.setHeight(gridSize * CELL_SIZE * 2);
+        canvas.setWidth(mapPane.getWidth());
+        canvas.setHeight(mapPane.getHeight());
+        staticCanvas.setWidth(canvas.getWidth());
+        staticCanvas.setHeight(canvas.getHeight());
+        viewport.setSize(canvas.getWidth(), canvas.getHeight());
+        invalidateStaticLayer();
+        restartRasterRenderer();
+    }
+    
+    private void fitView() {
+        viewport.fit(geometry.getMapSize(), geometry.getMapSize());
+        invalidateStaticLayer();
+    }
+    
+    private void installViewControls() {
+        mapPane.setOnScroll(e -> {
+            viewport.zoomAt(Math.pow(ZOOM_PER_WHEEL_PIXEL, e.getDeltaY()), e.getX(), e.getY());
+            invalidateStaticLayer();
+        });
+        mapPane.setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        mapPane.setOnMouseDragged(e -> {
+            viewport.pan(e.getX() - dragX, e.getY() - dragY);
+            dragX = e.getX();
+            dragY = e.getY();
+            invalidateStaticLayer();
+        });
+    }
+    
+    // One cell of margin so sprites overhanging their cell do not pop at the edges
+    private void updateVisibleCells() {
+        firstVisibleColumn = Math.max(0, geometry.cellAt(viewport.getMinX()) - 1);
+        lastVisibleColumn = Math.min(geometry.gridSize - 1, geometry.cellAt(viewport.getMaxX()) + 1);
+        firstVisibleRow = Math.max(0, geometry.cellAt(viewport.getMinY()) - 1);
+        lastVisibleRow = Math.min(geometry.gridSize - 1, geometry.cellAt(viewport.getMaxY()) + 1);
+    }
+    
+    private void updateDetailLevel() {
+        double scale = viewport.getScale();
+        DetailLevel level = scale >= DENSITY_SCALE ? DetailLevel.VEHICLES
+            : scale >= HEATMAP_SCALE ? DetailLevel.DENSITY : DetailLevel.HEATMAP;
+        if (level != detailLevel) {
+            if (detailLevel == DetailLevel.VEHICLES) {
+                hideVehicles();
+            }
+            detailLevel = level;
+            invalidateStaticLayer();
+        }
+    }
+    
+    // Vehicles stop being animated; they snap back in when shown again
+    private void hideVehicles() {
+        vehicleState.hideAll();
+    }
+    
+    // Stops the background renderer if it runs, and starts a new one for the current city, screen
+    // size and sprite atlas when pixelRenderer is on
+    private void restartRasterRenderer() {
+        if (rasterRenderer != null) {
+            rasterRenderer.stop();
+            rasterRenderer = null;
+            hideVehicles();
+        }
+        canvas.setVisible(!pixelRenderer);
+        rasterView.setVisible(pixelRenderer);
+        rasterView.setImage(null);
+        int width = (int) canvas.getWidth();
+        int height = (int) canvas.getHeight();
+        if (pixelRenderer && snapshots != null && width > 0 && height > 0) {
+            if (spriteAtlas == null) {
+                spriteAtlas = new SpriteAtlas(assetManager, nightMode, this::shouldUseAssets);
+            }
+            lastRasterView = currentRasterView();
+            rasterRenderer = new RasterRenderer(snapshots, geometry, spriteAtlas, width, height, lastRasterView);
+            rasterRenderer.start();
+        }
+    }
+    
+    private PixelRasterizer.View currentRasterView() {
+        return new PixelRasterizer.View(viewport.getScale(), viewport.getOffsetX(), viewport.getOffsetY(), detailLevel);
+    }
+    
+    // Pixel renderer pulse: hand over view changes, show the newest finished image
+    private void updateRasterRenderer() {
+        if (lastRasterView.scale() != viewport.getScale() || lastRasterView.offsetX() != viewport.getOffsetX()
+                || lastRasterView.offsetY() != viewport.getOffsetY() || lastRasterView.detail() != detailLevel) {
+            lastRasterView = currentRasterView();
+            rasterRenderer.setView(lastRasterView);
+        }
+        if (!staticLayerValid) {
+            drawStaticLayer();
+        }
+        RasterRenderer.Target target = rasterRenderer.poll();
+        if (target != null) {
+            rasterView.setImage(target.getImage());
+            updateStats(target.getFigures());
+        }
+    }
+    
+    // Map-to-screen transform of the viewport
+    private void applyViewTransform(GraphicsContext g) {
+        double scale = viewport.getScale();
+        g.setTransform(scale, 0, 0, scale, -viewport.getOffsetX() * scale, -viewport.getOffsetY() * scale);
     }
     
     private void startAnimation() {
@@ -336,13 +652,23 @@ public class TrafficSimulationGUI extends Application {
                 }
                 
                 double elapsedSeconds = (now - lastUpdate) / 1_000_000_000.0;
+                updateVisibleCells();
+                updateDetailLevel();
+                updateTimeline(now);
+                if (rasterRenderer != null) {
+                    // The background renderer reads the snapshots; this thread only shows its output
+                    updateRasterRenderer();
+                    lastUpdate = now;
+                    return;
+                }
+                frame = snapshots.latest();
                 
                 // Update vehicle positions with smooth animation
                 updateVehiclePositions(elapsedSeconds);
                 
                 if (elapsedSeconds >= 0.016 / simulationSpeed) { // ~60 FPS
                     drawSimulation();
-                    updateStats();
+                    updateStats(frame);
                     lastUpdate = now;
                 }
             }
@@ -350,181 +676,233 @@ public class TrafficSimulationGUI extends Application {
     }
     
     private void updateVehiclePositions(double elapsedSeconds) {
-        for (Vehicle vehicle : cityMap.getVehicles()) {
-            String vehicleId = vehicle.getVehicleId();
-            VehicleInfo info = vehicleInfoMap.computeIfAbsent(vehicleId, 
-                k -> new VehicleInfo(0, 0));
-            
-            Road currentRoad = vehicle.getCurrentRoad();
-            if (currentRoad != null) {
-                // Calculate vehicle position on the road
-                double progress = vehicle.getProgress();
-                String roadId = currentRoad.getId();
-                boolean isHorizontal = roadId.startsWith("R");
-                int row = Integer.parseInt(roadId.split("-")[0].substring(1));
-                int col = Integer.parseInt(roadId.split("-")[1]);
-                
-                double targetX, targetY;
-                if (isHorizontal) {
-                    targetX = col * CELL_SIZE * 2 + progress * CELL_SIZE * 2;
-                    targetY = row * CELL_SIZE * 2 + CELL_SIZE;
-                } else {
-                    targetX = col * CELL_SIZE * 2 + CELL_SIZE;
-                    targetY = row * CELL_SIZE * 2 + progress * CELL_SIZE * 2;
-                }
-                
-                // Set target position for smooth movement
-                info.setTarget(targetX, targetY);
-                
-                // Update position with smooth animation
-                info.updatePosition(elapsedSeconds, simulationSpeed);
-                
-                // Store route points for trail effect
-                info.addRoutePoint(info.x, info.y);
-            }
+        if (detailLevel != DetailLevel.VEHICLES) {
+            return;
         }
+        // Eases vehicles on visible roads towards the frame and records their trails
+        vehicleState.update(frame, geometry, elapsedSeconds, simulationSpeed,
+            firstVisibleRow, lastVisibleRow, firstVisibleColumn, lastVisibleColumn);
     }
     
-    private void updateStats() {
-        int activeVehicles = cityMap.getVehicles().size();
-        int totalCongestion = calculateTotalCongestion();
-        double avgWaitTime = calculateAverageWaitTime();
-        
-        // Count vehicles by type
-        int cars = 0, trucks = 0, motorcycles = 0, buses = 0;
-        for (Vehicle vehicle : cityMap.getVehicles()) {
-            if (vehicle.isActive()) {
-                switch (vehicle.getVehicleType()) {
-                    case CAR -> cars++;
-                    case TRUCK -> trucks++;
-                    case MOTORCYCLE -> motorcycles++;
-                    case BUS -> buses++;
-                }
-            }
+    private void updateStats(CityFrame figures) {
+        // Figures are computed with the frame, off the FX thread; the text is only rebuilt when
+        // they changed, and not every pulse
+        long now = System.nanoTime();
+        if (now - lastStatsUpdate < STATS_INTERVAL_NANOS) {
+            return;
+        }
+        VirtualThreadRunner runner = cityMap.getVirtualThreadRunner();
+        int carriers = runner != null ? runner.getObservedCarrierCount() : -1;
+        if (carriers == shownCarriers && shownFigures.hasSameFigures(figures)) {
+            return;
         }
+        shownFigures.copyFiguresFrom(figures);
+        shownCarriers = carriers;
+        lastStatsUpdate = now;
         
-        statsLabel.setText(String.format(
+        String stats = String.format(
             "Active: %d | Congestion: %d%% | Wait Time: %.1f sec | Cars: %d | Trucks: %d | Motorcycles: %d | Buses: %d",
-            activeVehicles, totalCongestion, avgWaitTime, cars, trucks, motorcycles, buses
-        ));
+            figures.getTotalVehicles(), figures.getCongestionPercent(), figures.getAverageWaitSeconds(),
+            figures.getActiveVehicles(Vehicle.VehicleType.CAR), figures.getActiveVehicles(Vehicle.VehicleType.TRUCK),
+            figures.getActiveVehicles(Vehicle.VehicleType.MOTORCYCLE), figures.getActiveVehicles(Vehicle.VehicleType.BUS)
+        );
+        
+        // Carrier usage when running on virtual threads; sampled, so only approximate
+        if (runner != null) {
+            stats += String.format(" | Carriers (sampled): ~%d/%d", carriers, VirtualThreadRunner.getCarrierParallelism());
+        }
+        statsLabel.setText(stats);
+    }
+    
+    private void drawSimulation() {
+        // Background, environment, road surfaces and intersections only change with the layout
+        if (!staticLayerValid) {
+            drawStaticLayer();
+        }
+        if (spriteAtlas == null) {
+            spriteAtlas = new SpriteAtlas(assetManager, nightMode, this::shouldUseAssets);
+        }
+        gc.setTransform(1, 0, 0, 1, 0, 0);
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        applyViewTransform(gc);
+        
+        switch (detailLevel) {
+            case VEHICLES -> drawVehicleDetail();
+            case DENSITY -> drawDensity();
+            case HEATMAP -> drawHeatmap();
+        }
     }
     
-    private int calculateTotalCongestion() {
-        int totalCapacity = 0;
-        int totalVehicles = 0;
+    private void drawVehicleDetail() {
+        // Congestion overlays, then traffic lights on top; each cell holds roads 2 * cell and 2 * cell + 1
+        for (int row = firstVisibleRow; row <= lastVisibleRow; row++) {
+            for (int column = firstVisibleColumn; column <= lastVisibleColumn; column++) {
+                int cell = row * geometry.gridSize + column;
+                drawCongestion(cell * 2);
+                drawCongestion(cell * 2 + 1);
+            }
+        }
+        for (int row = firstVisibleRow; row <= lastVisibleRow; row++) {
+            for (int column = firstVisibleColumn; column <= lastVisibleColumn; column++) {
+                int cell = row * geometry.gridSize + column;
+                drawTrafficLight(cell * 2);
+                drawTrafficLight(cell * 2 + 1);
+            }
+        }
         
-        for (Road road : cityMap.getRoads()) {
-            totalCapacity += road.getCapacity();
-            totalVehicles += road.getVehicleCount();
+        // Draw vehicle routes first (behind vehicles)
+        if (showRoutes) {
+            drawVehicleRoutes();
         }
         
-        return totalCapacity > 0 ? (totalVehicles * 100) / totalCapacity : 0;
+        // Draw vehicles
+        drawVehicles();
     }
     
-    private double calculateAverageWaitTime() {
-        double totalWaitTime = 0;
-        int vehicleCount = 0;
-        
-        for (Vehicle vehicle : cityMap.getVehicles()) {
-            if (vehicle.isActive()) {
-                totalWaitTime += vehicle.getTotalWaitTime() / 1000.0;
-                vehicleCount++;
+    // Each visible road filled with its density color and its light as a dot; cost depends on
+    // the number of visible roads, not vehicles
+    private void drawDensity() {
+        for (int row = firstVisibleRow; row <= lastVisibleRow; row++) {
+            for (int column = firstVisibleColumn; column <= lastVisibleColumn; column++) {
+                int cell = row * geometry.gridSize + column;
+                for (int road = cell * 2; road <= cell * 2 + 1; road++) {
+                    gc.setFill(SpriteAtlas.densityColor(frame.roadVehicles[road], frame.roadCapacity[road]));
+                    gc.fillRect(geometry.rectX[road], geometry.rectY[road],
+                        geometry.rectWidth[road], geometry.rectHeight[road]);
+                    
+                    switch (frame.lightState[road]) {
+                        case GREEN -> gc.setFill(Color.LIMEGREEN);
+                        case YELLOW -> gc.setFill(Color.GOLD);
+                        default -> gc.setFill(Color.RED);
+                    }
+                    gc.fillRect(geometry.lightX[road] - PADDING / 2.0, geometry.lightY[road] - PADDING / 2.0,
+                        PADDING, PADDING);
+                }
+            }
+        }
+    }
+    
+    // Density of every visible cell written into a gridSize x gridSize image, which is then
+    // stretched over the map with smoothing
+    private void drawHeatmap() {
+        int size = geometry.gridSize;
+        if (heatmap == null || (int) heatmap.getWidth() != size) {
+            heatmap = new WritableImage(size, size);
+        }
+        PixelWriter pixels = heatmap.getPixelWriter();
+        for (int row = firstVisibleRow; row <= lastVisibleRow; row++) {
+            for (int column = firstVisibleColumn; column <= lastVisibleColumn; column++) {
+                int cell = row * size + column;
+                pixels.setColor(column, row, SpriteAtlas.densityColor(frame.roadVehicles[cell * 2] + frame.roadVehicles[cell * 2 + 1],
+                    frame.roadCapacity[cell * 2] + frame.roadCapacity[cell * 2 + 1]));
             }
         }
         
-        return vehicleCount > 0 ? totalWaitTime / vehicleCount : 0.0;
+        int columns = lastVisibleColumn - firstVisibleColumn + 1;
+        int rows = lastVisibleRow - firstVisibleRow + 1;
+        gc.setImageSmoothing(true);
+        gc.drawImage(heatmap, firstVisibleColumn, firstVisibleRow, columns, rows,
+            firstVisibleColumn * geometry.cellPixels, firstVisibleRow * geometry.cellPixels,
+            columns * geometry.cellPixels, rows * geometry.cellPixels);
     }
     
-    private void drawSimulation() {
-        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+    // Draws everything that does not move into the static canvas under the vehicle canvas
+    private void drawStaticLayer() {
+        GraphicsContext g = staticCanvas.getGraphicsContext2D();
+        g.setTransform(1, 0, 0, 1, 0, 0);
+        g.clearRect(0, 0, staticCanvas.getWidth(), staticCanvas.getHeight());
         
         // Set background color based on mode
         if (nightMode) {
-            gc.setFill(Color.rgb(20, 20, 30));
-            gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            g.setFill(Color.rgb(20, 20, 30));
+            g.fillRect(0, 0, staticCanvas.getWidth(), staticCanvas.getHeight());
         } else {
-            gc.setFill(Color.rgb(240, 240, 240));
-            gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            g.setFill(Color.rgb(240, 240, 240));
+            g.fillRect(0, 0, staticCanvas.getWidth(), staticCanvas.getHeight());
         }
         
-        // Draw environment background (buildings, trees, grass)
-        drawEnvironment();
-        
-        // Draw grid
-        gc.setStroke(nightMode ? Color.rgb(70, 70, 80) : Color.GRAY);
-        gc.setLineWidth(1);
+        applyViewTransform(g);
         
-        // Draw horizontal roads
-        for (int i = 0; i < gridSize; i++) {
-            for (int j = 0; j < gridSize; j++) {
-                double x = j * CELL_SIZE * 2;
-                double y = i * CELL_SIZE * 2;
-                
-                // Road
-                drawRoad("R" + i + "-" + j, x, y + CELL_SIZE - PADDING, CELL_SIZE * 2, PADDING * 2, true);
-                
-                // Traffic light
-                drawTrafficLight("R" + i + "-" + j, x + CELL_SIZE * 2 - PADDING * 2, y + CELL_SIZE);
-            }
+        if (detailLevel == DetailLevel.HEATMAP) {
+            // The heatmap covers the map; nothing below it would be visible
+            staticLayerValid = true;
+            return;
         }
-        
-        // Draw vertical roads
-        for (int i = 0; i < gridSize; i++) {
-            for (int j = 0; j < gridSize; j++) {
-                double x = j * CELL_SIZE * 2;
-                double y = i * CELL_SIZE * 2;
-                
-                // Road
-                drawRoad("C" + i + "-" + j, x + CELL_SIZE - PADDING, y, PADDING * 2, CELL_SIZE * 2, false);
-                
-                // Traffic light
-                drawTrafficLight("C" + i + "-" + j, x + CELL_SIZE, y + CELL_SIZE * 2 - PADDING * 2);
+        if (detailLevel == DetailLevel.DENSITY) {
+            // Plain road surfaces under the density colors
+            g.setFill(nightMode ? Color.rgb(60, 60, 65) : Color.rgb(180, 180, 185));
+            for (int row = firstVisibleRow; row <= lastVisibleRow; row++) {
+                for (int column = firstVisibleColumn; column <= lastVisibleColumn; column++) {
+                    int cell = row * geometry.gridSize + column;
+                    for (int road = cell * 2; road <= cell * 2 + 1; road++) {
+                        g.fillRect(geometry.rectX[road], geometry.rectY[road],
+                            geometry.rectWidth[road], geometry.rectHeight[road]);
+                    }
+                }
             }
+            staticLayerValid = true;
+            return;
         }
         
-        // Draw intersections with enhanced visuals
-        for (int i = 0; i < gridSize; i++) {
-            for (int j = 0; j < gridSize; j++) {
-                double x = j * CELL_SIZE * 2 + CELL_SIZE - PADDING;
-                double y = i * CELL_SIZE * 2 + CELL_SIZE - PADDING;
-                
-                // Light intersection color to match roads
-                gc.setFill(nightMode ? Color.rgb(65, 65, 70) : Color.rgb(185, 185, 190));
-                gc.fillRect(x, y, PADDING * 2, PADDING * 2);
-                
-                // Add subtle crosswalk markings
-                gc.setStroke(nightMode ? Color.rgb(180, 180, 180, 0.5) : Color.rgb(255, 255, 255, 0.6));
-                gc.setLineWidth(1);
-                
-                // Horizontal crosswalk stripes
-                for (int stripe = 0; stripe < 3; stripe++) {
-                    double stripeY = y + 3 + stripe * 4;
-                    gc.strokeLine(x, stripeY, x + PADDING * 2, stripeY);
-                }
-                
-                // Vertical crosswalk stripes
-                for (int stripe = 0; stripe < 3; stripe++) {
-                    double stripeX = x + 3 + stripe * 4;
-                    gc.strokeLine(stripeX, y, stripeX, y + PADDING * 2);
+        // Draw environment background (buildings, trees, grass)
+        drawEnvironment(g);
+        
+        // Draw horizontal roads, then vertical ones
+        for (int pass = 0; pass < 2; pass++) {
+            for (int row = firstVisibleRow; row <= lastVisibleRow; row++) {
+                for (int column = firstVisibleColumn; column <= lastVisibleColumn; column++) {
+                    int cell = row * geometry.gridSize + column;
+                    int road = geometry.horizontal[cell * 2] == (pass == 0) ? cell * 2 : cell * 2 + 1;
+                    drawRoad(g, road);
                 }
             }
         }
         
-        // Draw vehicle routes first (behind vehicles)
-        if (showRoutes) {
-            drawVehicleRoutes();
+        // Draw intersections with enhanced visuals; intersection i sits in cell i
+        for (int row = firstVisibleRow; row <= lastVisibleRow; row++) {
+            for (int column = firstVisibleColumn; column <= lastVisibleColumn; column++) {
+                drawIntersection(g, row * geometry.gridSize + column);
+            }
+        }
+        staticLayerValid = true;
+    }
+    
+    private void drawIntersection(GraphicsContext g, int intersection) {
+        double x = geometry.intersectionX[intersection];
+        double y = geometry.intersectionY[intersection];
+        
+        // Light intersection color to match roads
+        g.setFill(nightMode ? Color.rgb(65, 65, 70) : Color.rgb(185, 185, 190));
+        g.fillRect(x, y, PADDING * 2, PADDING * 2);
+        
+        // Add subtle crosswalk markings
+        g.setStroke(nightMode ? Color.rgb(180, 180, 180, 0.5) : Color.rgb(255, 255, 255, 0.6));
+        g.setLineWidth(1);
+        
+        // Horizontal crosswalk stripes
+        for (int stripe = 0; stripe < 3; stripe++) {
+            double stripeY = y + 3 + stripe * 4;
+            g.strokeLine(x, stripeY, x + PADDING * 2, stripeY);
         }
         
-        // Draw vehicles
-        drawVehicles();
+        // Vertical crosswalk stripes
+        for (int stripe = 0; stripe < 3; stripe++) {
+            double stripeX = x + 3 + stripe * 4;
+            g.strokeLine(stripeX, y, stripeX, y + PADDING * 2);
+        }
     }
     
-    private void drawEnvironment() {
+    // Redraw the static layer on the next frame
+    private void invalidateStaticLayer() {
+        staticLayerValid = false;
+    }
+    
+    private void drawEnvironment(GraphicsContext g) {
         // Draw grass background in empty areas (less overwhelming)
         Image grassImage = assetManager.getImage("grass");
         if (grassImage != null && assetManager.hasImage("grass")) {
-            for (int i = 0; i < gridSize; i++) {
-                for (int j = 0; j < gridSize; j++) {
+            for (int i = firstVisibleRow; i <= lastVisibleRow; i++) {
+                for (int j = firstVisibleColumn; j <= lastVisibleColumn; j++) {
                     double x = j * CELL_SIZE * 2;
                     double y = i * CELL_SIZE * 2;
                     
@@ -534,11 +912,11 @@ public class TrafficSimulationGUI extends Application {
                     
                     // Only draw grass in specific corners to avoid clutter
                     if ((i + j) % 2 == 0) {
-                        gc.drawImage(grassImage, x + offset, y + offset, grassSize, grassSize);
-                        gc.drawImage(grassImage, x + CELL_SIZE + offset, y + CELL_SIZE + offset, grassSize, grassSize);
+                        g.drawImage(grassImage, x + offset, y + offset, grassSize, grassSize);
+                        g.drawImage(grassImage, x + CELL_SIZE + offset, y + CELL_SIZE + offset, grassSize, grassSize);
                     } else {
-                        gc.drawImage(grassImage, x + CELL_SIZE + offset, y + offset, grassSize, grassSize);
-                        gc.drawImage(grassImage, x + offset, y + CELL_SIZE + offset, grassSize, grassSize);
+                        g.drawImage(grassImage, x + CELL_SIZE + offset, y + offset, grassSize, grassSize);
+                        g.drawImage(grassImage, x + offset, y + CELL_SIZE + offset, grassSize, grassSize);
                     }
                 }
             }
@@ -550,15 +928,15 @@ public class TrafficSimulationGUI extends Application {
         
         if (buildingImage != null || apartmentsImage != null) {
             // Buildings on left and right sides only
-            for (int i = 0; i < gridSize; i += 2) { // Skip every other position
+            for (int i = firstVisibleRow & ~1; i <= lastVisibleRow; i += 2) { // Skip every other position
                 // Left side buildings
                 if (buildingImage != null && assetManager.hasImage("building")) {
-                    gc.drawImage(buildingImage, -35, i * CELL_SIZE * 2 + 15, 30, 45);
+                    g.drawImage(buildingImage, -35, i * CELL_SIZE * 2 + 15, 30, 45);
                 }
                 
                 // Right side buildings  
                 if (apartmentsImage != null && assetManager.hasImage("apartments")) {
-                    gc.drawImage(apartmentsImage, gridSize * CELL_SIZE * 2 + 5, i * CELL_SIZE * 2 + 15, 30, 45);
+                    g.drawImage(apartmentsImage, geometry.getMapSize() + 5, i * CELL_SIZE * 2 + 15, 30, 45);
                 }
             }
         }
@@ -567,13 +945,13 @@ public class TrafficSimulationGUI extends Application {
         Image treeImage = assetManager.getImage("tree");
         if (treeImage != null && assetManager.hasImage("tree")) {
             // Add trees only in specific locations
-            for (int i = 0; i < gridSize; i++) {
-                for (int j = 0; j < gridSize; j++) {
+            for (int i = firstVisibleRow; i <= lastVisibleRow; i++) {
+                for (int j = firstVisibleColumn; j <= lastVisibleColumn; j++) {
                     // Much more selective tree placement
                     if ((i + j * 2) % 6 == 0) { 
                         double x = j * CELL_SIZE * 2 + 12;
                         double y = i * CELL_SIZE * 2 + 12;
-                        gc.drawImage(treeImage, x, y, 16, 20);
+                        g.drawImage(treeImage, x, y, 16, 20);
                     }
                 }
             }
@@ -586,65 +964,54 @@ public class TrafficSimulationGUI extends Application {
             double skylineY = nightMode ? -45 : -35;
             double skylineOpacity = nightMode ? 0.6 : 0.4;
             
-            gc.setGlobalAlpha(skylineOpacity);
+            g.setGlobalAlpha(skylineOpacity);
             for (int i = 0; i < 2; i++) {
-                gc.drawImage(skylineImage, i * 150, skylineY, 160, 30);
+                g.drawImage(skylineImage, i * 150, skylineY, 160, 30);
             }
-            gc.setGlobalAlpha(1.0); // Reset opacity
+            g.setGlobalAlpha(1.0); // Reset opacity
         }
     }
     
-    private void drawRoad(String roadId, double x, double y, double width, double height, boolean isHorizontal) {
-        Road road = cityMap.getRoadById(roadId);
-        if (road != null) {
-            // Try to use road assets first
-            String assetName = isHorizontal ? "road_horizontal" : "road_vertical";
-            Image roadImage = assetManager.getImage(assetName);
-            
-            if (roadImage != null && assetManager.hasImage(assetName)) {
-                // Draw using road asset
-                drawRoadWithAsset(roadImage, x, y, width, height, road);
-            } else {
-                // Fallback to enhanced shape-based drawing
-                drawRoadWithShapes(x, y, width, height, isHorizontal, road);
-            }
+    private void drawRoad(GraphicsContext g, int roadIndex) {
+        double x = geometry.rectX[roadIndex];
+        double y = geometry.rectY[roadIndex];
+        double width = geometry.rectWidth[roadIndex];
+        double height = geometry.rectHeight[roadIndex];
+        boolean isHorizontal = geometry.horizontal[roadIndex];
+        
+        // Try to use road assets first
+        String assetName = isHorizontal ? "road_horizontal" : "road_vertical";
+        Image roadImage = assetManager.getImage(assetName);
+        
+        if (roadImage != null && assetManager.hasImage(assetName)) {
+            // Draw using road asset
+            g.drawImage(roadImage, x, y, width, height);
+        } else {
+            // Fallback to enhanced shape-based drawing
+            drawRoadWithShapes(g, x, y, width, height, isHorizontal);
         }
     }
     
-    private void drawRoadWithAsset(Image roadImage, double x, double y, double width, double height, Road road) {
-        // Calculate congestion overlay
-        double congestion = (double) road.getVehicleCount() / road.getCapacity();
-        
-        // Draw the road asset
-        gc.drawImage(roadImage, x, y, width, height);
-        
-        // Add congestion overlay if needed
-        if (congestion > 0.2) {
-            Color congestionColor = getCongestionColor(congestion);
-            gc.setFill(congestionColor);
-            gc.fillRect(x, y, width, height);
+    // Congestion tint over a road; the road itself is on the static layer
+    private void drawCongestion(int roadIndex) {
+        Color tint = spriteAtlas.congestionColor((double) frame.roadVehicles[roadIndex] / frame.roadCapacity[roadIndex]);
+        if (tint != null) {
+            gc.setFill(tint);
+            gc.fillRect(geometry.rectX[roadIndex], geometry.rectY[roadIndex],
+                geometry.rectWidth[roadIndex], geometry.rectHeight[roadIndex]);
         }
     }
     
-    private void drawRoadWithShapes(double x, double y, double width, double height, boolean isHorizontal, Road road) {
+    private void drawRoadWithShapes(GraphicsContext g, double x, double y, double width, double height, boolean isHorizontal) {
         // Enhanced version of original road drawing with lighter colors for better vehicle contrast
-        double congestion = (double) road.getVehicleCount() / road.getCapacity();
-        
         // Lighter road base color so vehicles stand out more
         Color baseRoadColor = nightMode ? Color.rgb(60, 60, 65) : Color.rgb(180, 180, 185);
-        gc.setFill(baseRoadColor);
-        gc.fillRect(x, y, width, height);
-        
-        // Add congestion overlay if needed
-        if (congestion > 0.2) {
-            Color congestionColor = getCongestionColor(congestion);
-            gc.setFill(congestionColor);
-            gc.fillRect(x, y, width, height);
-        }
+        g.setFill(baseRoadColor);
+        g.fillRect(x, y, width, height);
         
         // Draw road markings with subtle contrast
-        gc.setStroke(nightMode ? Color.rgb(200, 200, 200, 0.7) : Color.rgb(255, 255, 255, 0.8));
-        gc.setLineWidth(2);
+        g.setStroke(nightMode ? Color.rgb(200, 200, 200, 0.7) : Color.rgb(255, 255, 255, 0.8));
+        g.setLineWidth(2);
         
         if (isHorizontal) {
             // Enhanced dashed line in the middle of horizontal road
@@ -654,14 +1021,14 @@ public class TrafficSimulationGUI extends Application {
             double middleY = y + height / 2;
             
             for (double i = 0; i < width; i += dashLength + gapLength) {
-                gc.strokeLine(startX + i, middleY, startX + i + dashLength, middleY);
+                g.strokeLine(startX + i, middleY, startX + i + dashLength, middleY);
             }
             
             // Add subtle side borders
-            gc.setStroke(nightMode ? Color.rgb(200, 200, 200, 0.3) : Color.rgb(255, 255, 255, 0.4));
-            gc.setLineWidth(1);
-            gc.strokeLine(x, y + 2, x + width, y + 2);
-            gc.strokeLine(x, y + height - 2, x + width, y + height - 2);
+            g.setStroke(nightMode ? Color.rgb(200, 200, 200, 0.3) : Color.rgb(255, 255, 255, 0.4));
+            g.setLineWidth(1);
+            g.strokeLine(x, y + 2, x + width, y + 2);
+            g.strokeLine(x, y + height - 2, x + width, y + height - 2);
             
         } else {
             // Enhanced dashed line in the middle of vertical road
@@ -671,354 +1038,91 @@ public class TrafficSimulationGUI extends Application {
             double startY = y;
             
             for (double i = 0; i < height; i += dashLength + gapLength) {
-                gc.strokeLine(middleX, startY + i, middleX, startY + i + dashLength);
+                g.strokeLine(middleX, startY + i, middleX, startY + i + dashLength);
             }
             
             // Add subtle side borders
-            gc.setStroke(nightMode ? Color.rgb(200, 200, 200, 0.3) : Color.rgb(255, 255, 255, 0.4));
-            gc.setLineWidth(1);
-            gc.strokeLine(x + 2, y, x + 2, y + height);
-            gc.strokeLine(x + width - 2, y, x + width - 2, y + height);
-        }
-    }
-    
-    private Color getCongestionColor(double congestion) {
-        if (nightMode) {
-            if (congestion >= 0.8) return Color.rgb(200, 0, 0, 0.5); // Red - Heavy congestion
-            if (congestion >= 0.5) return Color.rgb(200, 120, 0, 0.5); // Orange - Medium congestion
-            if (congestion >= 0.2) return Color.rgb(200, 200, 0, 0.5); // Yellow - Light congestion
-            return Color.rgb(50, 50, 60, 0.5); // Dark gray - Normal
-        } else {
-            if (congestion >= 0.8) return Color.rgb(255, 0, 0, 0.3); // Red - Heavy congestion
-            if (congestion >= 0.5) return Color.rgb(255, 165, 0, 0.3); // Orange - Medium congestion
-            if (congestion >= 0.2) return Color.rgb(255, 255, 0, 0.3); // Yellow - Light congestion
-            return Color.rgb(200, 200, 200, 0.3); // Light gray - Normal
+            g.setStroke(nightMode ? Color.rgb(200, 200, 200, 0.3) : Color.rgb(255, 255, 255, 0.4));
+            g.setLineWidth(1);
+            g.strokeLine(x + 2, y, x + 2, y + height);
+            g.strokeLine(x + width - 2, y, x + width - 2, y + height);
         }
     }
     
     private void drawVehicles() {
-        for (Vehicle vehicle : cityMap.getVehicles()) {
-            String vehicleId = vehicle.getVehicleId();
-            VehicleInfo info = vehicleInfoMap.get(vehicleId);
+        int count = Math.min(frame.vehicleCount, vehicleState.size());
+        for (int slot = 0; slot < count; slot++) {
+            int road = frame.vehicleRoad[slot];
             
-            if (info != null && vehicle.getCurrentRoad() != null) {
-                // Get vehicle type and corresponding asset
-                Vehicle.VehicleType type = vehicle.getVehicleType();
-                String assetName = getAssetNameForVehicleType(type);
-                Image vehicleImage = assetManager.getImage(assetName);
+            if (vehicleState.visible[slot] && road >= 0) {
+                boolean horizontal = geometry.horizontal[road];
+                double x = vehicleState.x[slot];
+                double y = vehicleState.y[slot];
                 
-                if (shouldUseAssets(assetName) && vehicleImage != null) {
-                    // Draw vehicle using asset
-                    drawVehicleWithAsset(info, vehicleImage, type, vehicle);
-                } else {
-                    // Fallback to original shape-based drawing with enhanced visuals
-                    drawVehicleWithShapes(info, type, vehicle);
-                }
+                // Pre-rendered sprite, glow included
+                spriteAtlas.drawVehicle(gc, frame.vehicleType[slot], SpriteAtlas.vehicleColor(slot), horizontal, x, y);
                 
                 // Draw speed indicator
-                if (vehicle.getSpeed() > 1.1) {
-                    drawSpeedIndicator(info, vehicle);
+                double speed = frame.vehicleSpeed[slot];
+                if (speed > 1.1) {
+                    drawSpeedIndicator(slot, x, y, speed, horizontal);
                 }
             }
         }
     }
     
-    private String getAssetNameForVehicleType(Vehicle.VehicleType type) {
-        switch (type) {
-            case CAR: return "car";
-            case TRUCK: return "truck";
-            case MOTORCYCLE: return "motorcycle";
-            case BUS: return "bus";
-            default: return "car";
-        }
-    }
-    
-    private void drawVehicleWithAsset(VehicleInfo info, Image vehicleImage, Vehicle.VehicleType type, Vehicle vehicle) {
-        // Calculate vehicle size based on type
-        double size = VEHICLE_SIZE;
-        switch (type) {
-            case TRUCK: size *= 1.4; break;
-            case MOTORCYCLE: size *= 0.8; break;
-            case BUS: size *= 1.6; break;
-            default: size *= 1.0; break;
-        }
-        
-        // Add glow effect
-        DropShadow glow = new DropShadow();
-        glow.setColor(info.color);
-        glow.setRadius(size * 0.8);
-        gc.setEffect(glow);
-        
-        // Calculate rotation based on road direction
-        Road currentRoad = vehicle.getCurrentRoad();
-        double rotation = 0;
-        if (currentRoad != null) {
-            String roadId = currentRoad.getId();
-            if (roadId.startsWith("R")) {
-                rotation = 0; // Horizontal road
-            } else {
-                rotation = 90; // Vertical road
-            }
-        }
-        
-        // Save graphics context
-        gc.save();
-        
-        // Apply rotation
-        gc.translate(info.x, info.y);
-        gc.rotate(rotation);
-        
-        // Draw the vehicle image
-        gc.drawImage(vehicleImage, -size/2, -size/2, size, size);
-        
-        // Restore graphics context
-        gc.restore();
-        gc.setEffect(null);
-    }
-    
-    private void drawVehicleWithShapes(VehicleInfo info, Vehicle.VehicleType type, Vehicle vehicle) {
-        // Enhanced version of original shape-based drawing
-        DropShadow glow = new DropShadow();
-        glow.setColor(info.color);
-        glow.setRadius(VEHICLE_SIZE);
-        
-        gc.setEffect(glow);
-        gc.setFill(info.color);
-        
-        double size = VEHICLE_SIZE;
-        
-        switch (type) {
-            case CAR:
-                // Enhanced car with direction indicator
-                gc.fillOval(info.x - size/2, info.y - size/2, size, size);
-                // Add direction indicator
-                gc.setFill(Color.WHITE);
-                Road currentRoad = vehicle.getCurrentRoad();
-                if (currentRoad != null && currentRoad.getId().startsWith("R")) {
-                    // Horizontal direction indicator
-                    gc.fillRect(info.x + size/4, info.y - 1, size/4, 2);
-                } else {
-                    // Vertical direction indicator  
-                    gc.fillRect(info.x - 1, info.y + size/4, 2, size/4);
-                }
-                break;
-            case TRUCK:
-                size *= 1.4;
-                // Enhanced truck with cab and trailer
-                gc.fillRect(info.x - size/2, info.y - size/3, size, size*0.7);
-                // Cab detail
-                gc.setFill(info.color.darker());
-                gc.fillRect(info.x + size/3, info.y - size/4, size/6, size/2);
-                break;
-            case MOTORCYCLE:
-                size *= 0.8;
-                // Enhanced motorcycle with rider silhouette
-                double[] xPoints = {info.x, info.x + size/2, info.x, info.x - size/2};
-                double[] yPoints = {info.y - size/2, info.y, info.y + size/2, info.y};
-                gc.fillPolygon(xPoints, yPoints, 4);
-                // Rider detail
-                gc.setFill(Color.DARKGRAY);
-                gc.fillOval(info.x - size/6, info.y - size/3, size/3, size/3);
-                break;
-            case BUS:
-                size *= 1.6;
-                // Enhanced bus with windows
-                gc.fillRoundRect(info.x - size/2, info.y - size/3, size, size*0.6, 4, 4);
-                // Windows
-                gc.setFill(Color.LIGHTBLUE);
-                for (int i = 0; i < 3; i++) {
-                    double windowX = info.x - size/3 + i * size/4;
-                    gc.fillRect(windowX, info.y - size/6, size/6, size/4);
-                }
-                break;
-        }
-        
-        gc.setEffect(null);
-    }
-    
-    private void drawSpeedIndicator(VehicleInfo info, Vehicle vehicle) {
+    private void drawSpeedIndicator(int slot, double x, double y, double speed, boolean horizontal) {
         // Enhanced speed lines with particle effect
-        gc.setStroke(info.color);
+        Color[] trailColors = SpriteAtlas.trailColors(SpriteAtlas.vehicleColor(slot));
         gc.setLineWidth(1);
-        double speedLineLength = vehicle.getSpeed() * 5;
+        double speedLineLength = speed * 5;
         
-        Road currentRoad = vehicle.getCurrentRoad();
-        if (currentRoad != null) {
-            String roadId = currentRoad.getId();
-            boolean isHorizontal = roadId.startsWith("R");
+        // Multiple speed lines for better effect
+        for (int i = 0; i < 3; i++) {
+            double offset = i * 2;
+            gc.setStroke(trailColors[i]);
             
-            // Multiple speed lines for better effect
-            for (int i = 0; i < 3; i++) {
-                double offset = i * 2;
-                double opacity = 1.0 - (i * 0.3);
-                
-                Color speedColor = Color.rgb(
-                    (int)(info.color.getRed() * 255),
-                    (int)(info.color.getGreen() * 255),
-                    (int)(info.color.getBlue() * 255),
-                    opacity
+            if (horizontal) {
+                gc.strokeLine(
+                    x - speedLineLength - offset, 
+                    y + (i-1), 
+                    x - speedLineLength/2 - offset, 
+                    y + (i-1)
+                );
+            } else {
+                gc.strokeLine(
+                    x + (i-1), 
+                    y - speedLineLength - offset, 
+                    x + (i-1), 
+                    y - speedLineLength/2 - offset
                 );
-                gc.setStroke(speedColor);
-                
-                if (isHorizontal) {
-                    gc.strokeLine(
-                        info.x - speedLineLength - offset, 
-                        info.y + (i-1), 
-                        info.x - speedLineLength/2 - offset, 
-                        info.y + (i-1)
-                    );
-                } else {
-                    gc.strokeLine(
-                        info.x + (i-1), 
-                        info.y - speedLineLength - offset, 
-                        info.x + (i-1), 
-                        info.y - speedLineLength/2 - offset
-                    );
-                }
             }
         }
     }
     
     private void drawVehicleRoutes() {
-        for (VehicleInfo info : vehicleInfoMap.values()) {
-            if (info.routePoints.size() > 1) {
+        gc.setLineWidth(3);
+        int count = vehicleState.size();
+        for (int slot = 0; slot < count; slot++) {
+            int points = vehicleState.getTrailSize(slot);
+            if (vehicleState.visible[slot] && points > 1) {
                 // Draw route trail with fading effect
-                for (int i = 0; i < info.routePoints.size() - 1; i++) {
-                    double opacity = (double)(i + 1) / info.routePoints.size();
-                    gc.setStroke(Color.rgb(
-                        (int)(info.color.getRed() * 255),
-                        (int)(info.color.getGreen() * 255),
-                        (int)(info.color.getBlue() * 255),
-                        opacity * 0.5
-                    ));
-                    gc.setLineWidth(3);
-                    
-                    double[] point1 = info.routePoints.get(i);
-                    double[] point2 = info.routePoints.get(i + 1);
-                    gc.strokeLine(point1[0], point1[1], point2[0], point2[1]);
-                }
-            }
-        }
-    }
-    
-    private void drawTrafficLight(String roadId, double x, double y) {
-        Road road = cityMap.getRoadById(roadId);
-        if (road != null) {
-            TrafficLight light = cityMap.getTrafficLightForRoad(road);
-            if (light != null) {
-                // Get appropriate traffic light asset
-                String assetName = getTrafficLightAssetName(light.getTrafficLightState());
-                Image lightImage = assetManager.getImage(assetName);
-                
-                if (lightImage != null && assetManager.hasImage(assetName)) {
-                    // Draw using asset
-                    drawTrafficLightWithAsset(lightImage, x, y, light);
-                } else {
-                    // Fallback to enhanced shape-based drawing
-                    drawTrafficLightWithShapes(x, y, light);
+                int color = SpriteAtlas.vehicleColor(slot);
+                for (int i = 0; i < points - 1; i++) {
+                    gc.setStroke(SpriteAtlas.routeColor(color, i, points));
+                    gc.strokeLine(vehicleState.getTrailX(slot, i), vehicleState.getTrailY(slot, i),
+                        vehicleState.getTrailX(slot, i + 1), vehicleState.getTrailY(slot, i + 1));
                 }
             }
         }
     }
     
-    private String getTrafficLightAssetName(TrafficLight.State state) {
-        switch (state) {
-            case GREEN: return "traffic_light_green";
-            case YELLOW: return "traffic_light_yellow";
-            case RED: return "traffic_light_red";
-            default: return "traffic_light_red";
-        }
-    }
-    
-    private void drawTrafficLightWithAsset(Image lightImage, double x, double y, TrafficLight light) {
-        // Apply brightness effect
-        double brightness = light.getBrightness();
-        
-        // Create glow effect
-        Glow glow = new Glow();
-        glow.setLevel(0.8 * brightness);
-        
-        // Add emergency effect if needed
-        if (light.isEmergencyMode()) {
-            DropShadow emergencyEffect = new DropShadow();
-            emergencyEffect.setColor(Color.YELLOW);
-            emergencyEffect.setRadius(PADDING * 2);
-            emergencyEffect.setSpread(0.7);
-            gc.setEffect(emergencyEffect);
-        } else {
-            gc.setEffect(glow);
-        }
-        
-        // Draw the traffic light image
-        double size = PADDING * 2;
-        gc.drawImage(lightImage, x - size/2, y - size/2, size, size);
-        gc.setEffect(null);
-    }
-    
-    private void drawTrafficLightWithShapes(double x, double y, TrafficLight light) {
-        // Enhanced shape-based traffic light with housing
-        Color color;
-        switch (light.getTrafficLightState()) {
-            case GREEN -> color = Color.rgb(0, 255, 0);
-            case YELLOW -> color = Color.rgb(255, 255, 0);
-            default -> color = Color.rgb(255, 0, 0);
-        }
-        
-        // Apply brightness adjustment for blinking effect
-        double brightness = light.getBrightness();
-        color = color.deriveColor(0, 1.0, brightness, 1.0);
-        
-        // Draw traffic light housing (background)
-        gc.setFill(nightMode ? Color.rgb(30, 30, 30) : Color.rgb(60, 60, 60));
-        gc.fillRoundRect(x - PADDING, y - PADDING * 1.5, PADDING * 2, PADDING * 3, 4, 4);
-        
-        // Draw all three light positions
-        double lightRadius = PADDING * 0.3;
-        
-        // Red light position (top)
-        gc.setFill(light.getTrafficLightState() == TrafficLight.State.RED ? 
-            color : Color.rgb(80, 0, 0));
-        gc.fillOval(x - lightRadius, y - PADDING, lightRadius * 2, lightRadius * 2);
-        
-        // Yellow light position (middle)
-        gc.setFill(light.getTrafficLightState() == TrafficLight.State.YELLOW ? 
-            color : Color.rgb(80, 80, 0));
-        gc.fillOval(x - lightRadius, y - lightRadius, lightRadius * 2, lightRadius * 2);
-        
-        // Green light position (bottom)
-        gc.setFill(light.getTrafficLightState() == TrafficLight.State.GREEN ? 
-            color : Color.rgb(0, 80, 0));
-        gc.fillOval(x - lightRadius, y, lightRadius * 2, lightRadius * 2);
-        
-        // Create glow effect for active light
-        Glow glow = new Glow();
-        glow.setLevel(0.8 * brightness);
-        
-        // Add emergency effect
-        if (light.isEmergencyMode()) {
-            DropShadow emergencyEffect = new DropShadow();
-            emergencyEffect.setColor(Color.YELLOW);
-            emergencyEffect.setRadius(PADDING);
-            emergencyEffect.setSpread(0.7);
-            gc.setEffect(emergencyEffect);
-        } else {
-            gc.setEffect(glow);
-        }
-        
-        // Redraw the active light with glow
-        gc.setFill(color);
-        switch (light.getTrafficLightState()) {
-            case RED -> gc.fillOval(x - lightRadius, y - PADDING, lightRadius * 2, lightRadius * 2);
-            case YELLOW -> gc.fillOval(x - lightRadius, y - lightRadius, lightRadius * 2, lightRadius * 2);
-            case GREEN -> gc.fillOval(x - lightRadius, y, lightRadius * 2, lightRadius * 2);
-        }
-        
-        gc.setEffect(null);
-        
-        // Draw housing outline
-        gc.setStroke(nightMode ? Color.rgb(100, 100, 100) : Color.BLACK);
-        gc.setLineWidth(1);
-        gc.strokeRoundRect(x - PADDING, y - PADDING * 1.5, PADDING * 2, PADDING * 3, 4, 4);
+    private void drawTrafficLight(int roadIndex) {
+        double x = geometry.lightX[roadIndex];
+        double y = geometry.lightY[roadIndex];
+        // Lights share their road's index
+        spriteAtlas.drawTrafficLight(gc, frame.lightState[roadIndex], frame.lightBrightness[roadIndex],
+            frame.lightEmergency[roadIndex], x, y);
     }
     
     private void showAssetStatus() {
@@ -0,0 +1,17 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+// Connects a DistributedSimulation coordinator to its workers. Implementations decide where the
+// workers run (threads, local processes, other machines); the protocol on top is the same.
+public interface Transport extends Closeable {
+    // Starts or accepts workerCount workers and returns the coordinator's end of each channel
+    List<Channel> open(int workerCount) throws IOException;
+
+    // Ordered, reliable message channel between the coordinator and one worker
+    interface Channel extends Closeable {
+        void send(byte[] message) throws IOException;
+
+        byte[] receive() throws IOException;
+    }
+}
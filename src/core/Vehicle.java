@@ -1,21 +1,17 @@
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
+// Handle onto one slot of a VehicleStore; all mutable state lives in the store's columns
 public class Vehicle extends Thread {
     private final String id;
-    private int position;
-    private boolean active;
-    private final List<Road> route;
-    private final List<TrafficLight> lights;
-    private final List<Intersection> intersections;
+    private final VehicleStore store;
+    private final int slot;
     private static final int MAX_RETRY_COUNT = 3;
-    private static final Random random = new Random();
-    private Road currentRoad;
-    private double progress = 0.0;
-    private long totalWaitTime = 0;
-    private long waitStartTime = 0;
-    private double speed;
-    private VehicleType type;
+    // This vehicle's own stream (see CityMap.randomStream), only used by whoever drives the vehicle
+    private final SplittableRandom random;
+    private final SimulationClock clock;
+    // Light this vehicle's thread is blocked on, so stopVehicle can wake it
+    private volatile TrafficLight awaitedLight;
     
     public enum VehicleType {
         CAR(1.0),
@@ -33,52 +29,72 @@ public class Vehicle extends Thread {
             return speedFactor;
         }
         
-        public static VehicleType getRandomType() {
+        public static VehicleType getRandomType(SplittableRandom random) {
             VehicleType[] types = VehicleType.values();
             return types[random.nextInt(types.length)];
         }
     }
 
-    public Vehicle(String id, List<Road> route, List<TrafficLight> lights, List<Intersection> intersections) {
+    public Vehicle(String id, VehicleStore store, List<Road> route, List<TrafficLight> lights,
+                   List<Intersection> intersections, SimulationClock clock, SplittableRandom random) {
         this.id = id;
-        this.route = route;
-        this.lights = lights;
-        this.intersections = intersections;
-        this.position = 0;
-        this.active = true;
-        this.type = VehicleType.getRandomType();
-        this.speed = type.getSpeedFactor() * (0.8 + random.nextDouble() * 0.4); // Random speed variation
-        
-        if (!route.isEmpty()) {
-            this.currentRoad = route.get(0);
-        }
+        this.store = store;
+        this.clock = clock;
+        this.random = random;
+        VehicleType type = VehicleType.getRandomType(random);
+        double speed = type.getSpeedFactor() * (0.8 + random.nextDouble() * 0.4); // Random speed variation
+        this.slot = store.add(type, speed, route, lights, intersections);
+    }
+
+    // Route as RoutingEngine indices instead of object lists
+    public Vehicle(String id, VehicleStore store, RoutingEngine.Route route, SimulationClock clock,
+                   SplittableRandom random) {
+        this.id = id;
+        this.store = store;
+        this.clock = clock;
+        this.random = random;
+        VehicleType type = VehicleType.getRandomType(random);
+        double speed = type.getSpeedFactor() * (0.8 + random.nextDouble() * 0.4); // Random speed variation
+        this.slot = store.add(type, speed, route.roads(), route.lights(), route.intersections());
+    }
+
+    // Handle onto a slot the caller already filled in (vehicles arriving from another worker)
+    Vehicle(String id, VehicleStore store, int slot, SimulationClock clock, SplittableRandom random) {
+        this.id = id;
+        this.store = store;
+        this.clock = clock;
+        this.random = random;
+        this.slot = slot;
     }
 
     @Override
     public void run() {
-        for (int i = 0; i < route.size() && active; i++) {
-            Road currentRoad = route.get(i);
-            TrafficLight currentLight = lights.get(i);
-            Intersection currentIntersection = intersections.get(i);
+        for (int i = 0; i < store.getRouteLength(slot) && isActive(); i++) {
+            Road currentRoad = store.routeRoad(slot, i);
+            TrafficLight currentLight = store.routeLight(slot, i);
+            Intersection currentIntersection = store.routeIntersection(slot, i);
             
-            this.currentRoad = currentRoad;
-            this.progress = 0.0;
+            store.roadIndex[slot] = currentRoad.getIndex();
+            store.progress[slot] = 0.0;
             
             int retryCount = 0;
             boolean success = false;
             
-            while (!success && retryCount < MAX_RETRY_COUNT && active) {
+            while (!success && retryCount < MAX_RETRY_COUNT && isActive()) {
                 try {
-                    waitStartTime = System.currentTimeMillis();
+                    store.waitStartTime[slot] = clock.currentTimeMillis();
                     success = tryToMoveThrough(currentRoad, currentLight, currentIntersection);
                     if (!success) {
                         retryCount++;
+                        store.metrics.recordRetry();
                         // Add random wait time to prevent deadlocks
                         Thread.sleep(random.nextInt(1000) + 500);
                         
                         if (retryCount == MAX_RETRY_COUNT) {
                             // Try alternative route or turn back
-                            System.out.println("Vehicle " + id + " failed to proceed after " + MAX_RETRY_COUNT + " attempts");
+                            EventLog.log(clock, EventLog.Kind.VEHICLE_RETRIES_EXHAUSTED, id, null,
+                                    MAX_RETRY_COUNT, null);
+                            store.metrics.recordRetriesExhausted();
                             handleFailure(i);
                         }
                     }
@@ -88,16 +104,181 @@ public class Vehicle extends Thread {
                 }
             }
         }
-        System.out.println("Vehicle " + id + " completed its route");
+        EventLog.log(clock, EventLog.Kind.VEHICLE_COMPLETED, id, null);
+        store.setFinished(slot);
+    }
+    
+    // Advances the same route logic as run() without blocking; now is the simulated time in ms.
+    // Returns the next time the vehicle needs a step on its own, or Long.MAX_VALUE while it
+    // waits for a light or is done.
+    public long step(long now) {
+        advance(now);
+        return switch (store.phase[slot]) {
+            case VehicleStore.PHASE_WAIT_INTERSECTION -> store.waitStartTime[slot]
+                    + store.routeIntersection(slot, store.routeIndex[slot]).getTimeoutMillis() + 1;
+            case VehicleStore.PHASE_MOVING -> store.moveStartTime[slot] + store.moveDuration[slot];
+            case VehicleStore.PHASE_BACKOFF -> store.phaseDeadline[slot];
+            default -> Long.MAX_VALUE;
+        };
+    }
+    
+    private void advance(long now) {
+        if (store.phase[slot] == VehicleStore.PHASE_NOT_STARTED) {
+            if (store.getRouteLength(slot) == 0) {
+                store.phase[slot] = VehicleStore.PHASE_DONE;
+                store.setFinished(slot);
+                return;
+            }
+            beginRoad(now);
+        }
+        if (store.phase[slot] == VehicleStore.PHASE_DONE) {
+            return;
+        }
+        if (!isActive()) {
+            abortStep();
+            return;
+        }
+        
+        int leg = store.routeIndex[slot];
+        Road road = store.routeRoad(slot, leg);
+        switch (store.phase[slot]) {
+            case VehicleStore.PHASE_WAIT_LIGHT -> {
+                if (store.routeLight(slot, leg).getTrafficLightState() != TrafficLight.State.GREEN) {
+                    return;
+                }
+                long redLightWait = now - store.waitStartTime[slot];
+                store.addWaitTime(slot, redLightWait);
+                store.metrics.recordRedLightWait(redLightWait);
+                
+                // Try to enter the road
+                if (!road.addVehicle(this)) {
+                    failAttempt(now);
+                    return;
+                }
+                store.waitStartTime[slot] = now;
+                store.phase[slot] = VehicleStore.PHASE_WAIT_INTERSECTION;
+                stepIntersection(road, now);
+            }
+            case VehicleStore.PHASE_WAIT_INTERSECTION -> stepIntersection(road, now);
+            case VehicleStore.PHASE_MOVING -> {
+                if (now < store.moveStartTime[slot] + store.moveDuration[slot]) {
+                    return;
+                }
+                store.progress[slot] = 1.0;
+                EventLog.log(clock, EventLog.Kind.VEHICLE_MOVED, id, road.getId(), store.position[slot],
+                        road.getDirection());
+                
+                // Exit the intersection
+                store.routeIntersection(slot, leg).exit(id);
+                store.intersectionIndex[slot] = -1;
+                road.removeVehicle(this);
+                // waitStartTime still holds the moment the vehicle entered the road
+                store.metrics.recordRoadTraversal(road, now - store.waitStartTime[slot]);
+                advanceRoute(now);
+            }
+            case VehicleStore.PHASE_BACKOFF -> {
+                if (now < store.phaseDeadline[slot]) {
+                    return;
+                }
+                if (store.retryCount[slot] >= MAX_RETRY_COUNT) {
+                    advanceRoute(now);
+                } else {
+                    store.waitStartTime[slot] = now;
+                    store.phase[slot] = VehicleStore.PHASE_WAIT_LIGHT;
+                }
+            }
+            default -> { }
+        }
+    }
+    
+    private void stepIntersection(Road road, long now) {
+        Intersection intersection = store.routeIntersection(slot, store.routeIndex[slot]);
+        switch (intersection.tryEnter(id, now)) {
+            case ENTERED -> {
+                store.intersectionIndex[slot] = intersection.getIndex();
+                long admissionWait = now - store.waitStartTime[slot];
+                store.addWaitTime(slot, admissionWait);
+                store.metrics.recordAdmissionWait(admissionWait);
+                store.position[slot]++;
+                
+                // Same duration the 20 sleeping steps of move() add up to
+                long duration = 0;
+                double stepDelay = calculateStepDelay(road);
+                for (int i = 0; i < 20; i++) {
+                    duration += nextStepDelay(stepDelay);
+                }
+                store.moveDuration[slot] = duration;
+                store.moveStartTime[slot] = now;
+                store.phase[slot] = VehicleStore.PHASE_MOVING;
+            }
+            case TIMED_OUT -> {
+                road.removeVehicle(this);
+                store.addWaitTime(slot, now - store.waitStartTime[slot]);
+                failAttempt(now);
+            }
+            case WAITING -> { }
+        }
+    }
+    
+    private void failAttempt(long now) {
+        store.retryCount[slot]++;
+        store.metrics.recordRetry();
+        // Add random wait time to prevent deadlocks
+        store.phaseDeadline[slot] = now + random.nextInt(1000) + 500;
+        store.phase[slot] = VehicleStore.PHASE_BACKOFF;
+        
+        if (store.retryCount[slot] == MAX_RETRY_COUNT) {
+            EventLog.log(clock, EventLog.Kind.VEHICLE_RETRIES_EXHAUSTED, id, null, MAX_RETRY_COUNT, null);
+            store.metrics.recordRetriesExhausted();
+            handleFailure(store.routeIndex[slot]);
+        }
+    }
+    
+    private void beginRoad(long now) {
+        store.roadIndex[slot] = store.routeRoad(slot, store.routeIndex[slot]).getIndex();
+        store.progress[slot] = 0.0;
+        store.retryCount[slot] = 0;
+        store.waitStartTime[slot] = now;
+        store.phase[slot] = VehicleStore.PHASE_WAIT_LIGHT;
+    }
+    
+    private void advanceRoute(long now) {
+        store.routeIndex[slot]++;
+        if (store.routeIndex[slot] < store.getRouteLength(slot) && isActive()) {
+            beginRoad(now);
+        } else {
+            store.phase[slot] = VehicleStore.PHASE_DONE;
+            EventLog.log(clock, EventLog.Kind.VEHICLE_COMPLETED, id, null);
+            store.setFinished(slot);
+        }
+    }
+    
+    private void abortStep() {
+        int leg = store.routeIndex[slot];
+        if (store.phase[slot] == VehicleStore.PHASE_MOVING) {
+            store.routeIntersection(slot, leg).exit(id);
+            store.intersectionIndex[slot] = -1;
+            store.routeRoad(slot, leg).removeVehicle(this);
+        } else if (store.phase[slot] == VehicleStore.PHASE_WAIT_INTERSECTION) {
+            store.routeIntersection(slot, leg).cancelWaiting(id);
+            store.routeRoad(slot, leg).removeVehicle(this);
+        }
+        store.phase[slot] = VehicleStore.PHASE_DONE;
+        store.setFinished(slot);
     }
 
     private boolean tryToMoveThrough(Road road, TrafficLight light, Intersection intersection) throws InterruptedException {
         // Wait for green light
-        waitStartTime = System.currentTimeMillis();
-        while (active && light.getTrafficLightState() != TrafficLight.State.GREEN) {
-            Thread.sleep(100);
+        store.waitStartTime[slot] = clock.currentTimeMillis();
+        awaitedLight = light;
+        try {
+            light.awaitGreen(this::isActive);
+        } finally {
+            awaitedLight = null;
         }
-        totalWaitTime += System.currentTimeMillis() - waitStartTime;
+        long redLightWait = clock.currentTimeMillis() - store.waitStartTime[slot];
+        store.addWaitTime(slot, redLightWait);
+        store.metrics.recordRedLightWait(redLightWait);
         
         // Try to enter the road
         if (!road.addVehicle(this)) {
@@ -105,20 +286,26 @@ public class Vehicle extends Thread {
         }
         
         // Try to enter the intersection
-        waitStartTime = System.currentTimeMillis();
+        long enteredRoad = clock.currentTimeMillis();
+        store.waitStartTime[slot] = enteredRoad;
         if (!intersection.enter(id)) {
             road.removeVehicle(this);
-            totalWaitTime += System.currentTimeMillis() - waitStartTime;
+            store.addWaitTime(slot, clock.currentTimeMillis() - store.waitStartTime[slot]);
             return false;
         }
-        totalWaitTime += System.currentTimeMillis() - waitStartTime;
+        store.intersectionIndex[slot] = intersection.getIndex();
+        long admissionWait = clock.currentTimeMillis() - store.waitStartTime[slot];
+        store.addWaitTime(slot, admissionWait);
+        store.metrics.recordAdmissionWait(admissionWait);
         
         // Move through the road
         move(road);
         
         // Exit the intersection
         intersection.exit(id);
+        store.intersectionIndex[slot] = -1;
         road.removeVehicle(this);
+        store.metrics.recordRoadTraversal(road, clock.currentTimeMillis() - enteredRoad);
         
         return true;
     }
@@ -126,80 +313,115 @@ public class Vehicle extends Thread {
     private void handleFailure(int currentRouteIndex) {
         // Simple fallback strategy: return to previous road
         if (currentRouteIndex > 0) {
-            System.out.println("Vehicle " + id + " is returning to previous road");
-            position--;
-            if (currentRouteIndex - 1 < route.size()) {
-                currentRoad = route.get(currentRouteIndex - 1);
+            EventLog.log(clock, EventLog.Kind.VEHICLE_RETURNING, id, null);
+            store.position[slot]--;
+            if (currentRouteIndex - 1 < store.getRouteLength(slot)) {
+                store.roadIndex[slot] = store.routeRoad(slot, currentRouteIndex - 1).getIndex();
             }
         } else {
             // Cancel route if at starting point
-            System.out.println("Vehicle " + id + " cancelling route");
-            active = false;
+            EventLog.log(clock, EventLog.Kind.VEHICLE_CANCELLED, id, null);
+            store.setActive(slot, false);
         }
     }
 
     private void move(Road road) {
-        position++;
+        store.position[slot]++;
         
         // Calculate movement steps based on vehicle type and speed
         int steps = 20;
-        double stepDelay = 50 / speed;
-        
-        // Simulate traffic conditions affecting speed
-        double congestion = (double) road.getVehicleCount() / road.getCapacity();
-        double congestionFactor = 1.0 - (congestion * 0.7); // Slow down in congestion
-        stepDelay /= congestionFactor;
+        double stepDelay = calculateStepDelay(road);
         
         // Smooth animation with variable speed
         for (int i = 0; i < steps; i++) {
             try {
-                progress = i / (double)steps;
-                
-                // Add slight randomness to movement for realism
-                if (random.nextDouble() < 0.1) {
-                    Thread.sleep((long)(stepDelay * (0.8 + random.nextDouble() * 0.4)));
-                } else {
-                    Thread.sleep((long)stepDelay);
-                }
+                store.progress[slot] = i / (double)steps;
+                Thread.sleep(nextStepDelay(stepDelay));
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
             }
         }
-        progress = 1.0;
-        System.out.println("Vehicle " + id + " moved to position " + position + " on road " + road.getId()
-                + " [" + road.getDirection() + "]");
+        store.progress[slot] = 1.0;
+        EventLog.log(clock, EventLog.Kind.VEHICLE_MOVED, id, road.getId(), store.position[slot], road.getDirection());
+    }
+
+    private double calculateStepDelay(Road road) {
+        double stepDelay = 50 / store.speed[slot];
+        
+        // Simulate traffic conditions affecting speed
+        double congestion = (double) road.getVehicleCount() / road.getCapacity();
+        double congestionFactor = 1.0 - (congestion * 0.7); // Slow down in congestion
+        return stepDelay / congestionFactor;
+    }
+    
+    private long nextStepDelay(double stepDelay) {
+        // Add slight randomness to movement for realism
+        if (random.nextDouble() < 0.1) {
+            return (long)(stepDelay * (0.8 + random.nextDouble() * 0.4));
+        }
+        return (long)stepDelay;
     }
 
     public String getVehicleId() {
         return id;
     }
 
+    public int getSlot() {
+        return slot;
+    }
+
     public boolean isActive() {
-        return active;
+        return store.isActive(slot);
+    }
+    
+    public boolean isFinished() {
+        return store.isFinished(slot);
     }
 
     public Road getCurrentRoad() {
-        return currentRoad;
+        return store.getRoad(slot);
     }
 
     public double getProgress() {
-        return progress;
+        return store.getProgress(slot);
+    }
+    
+    // Light this vehicle is waiting on in a stepped mode, or null
+    public TrafficLight getWaitingLight() {
+        return store.phase[slot] == VehicleStore.PHASE_WAIT_LIGHT
+                ? store.routeLight(slot, store.routeIndex[slot]) : null;
+    }
+    
+    // Intersection this vehicle is queued at in a stepped mode, or null
+    public Intersection getWaitingIntersection() {
+        return store.phase[slot] == VehicleStore.PHASE_WAIT_INTERSECTION
+                ? store.routeIntersection(slot, store.routeIndex[slot]) : null;
+    }
+    
+    // Intersection this vehicle is driving through in a stepped mode, or null
+    public Intersection getOccupiedIntersection() {
+        return store.phase[slot] == VehicleStore.PHASE_MOVING
+                ? store.routeIntersection(slot, store.routeIndex[slot]) : null;
     }
 
     public long getTotalWaitTime() {
-        return totalWaitTime;
+        return store.getTotalWaitTime(slot);
     }
     
     public VehicleType getVehicleType() {
-        return type;
+        return store.getType(slot);
     }
     
     public double getSpeed() {
-        return speed;
+        return store.getSpeed(slot);
     }
 
     public void stopVehicle() {
-        active = false;
+        store.setActive(slot, false);
+        TrafficLight light = awaitedLight;
+        if (light != null) {
+            light.wakeWaiters();
+        }
     }
 }
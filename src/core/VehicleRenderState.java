@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+// Per-vehicle animation state of the GUI, in primitive columns indexed by VehicleStore slot like
+// the store itself: the eased on-screen position and a short trail kept in a ring buffer.
+// Columns only grow; once they fit the vehicle count, a frame allocates nothing.
+public class VehicleRenderState {
+    static final int TRAIL_LENGTH = 5;
+    private static final double EASING = 5.0;
+
+    private int size = 0;
+    double[] x = new double[0];
+    double[] y = new double[0];
+    double[] targetX = new double[0];
+    double[] targetY = new double[0];
+    boolean[] visible = new boolean[0]; // on screen as of the last update
+    // TRAIL_LENGTH points per slot, oldest first starting at trailStart
+    private double[] trailX = new double[0];
+    private double[] trailY = new double[0];
+    private int[] trailStart = new int[0];
+    private int[] trailSize = new int[0];
+
+    public int size() {
+        return size;
+    }
+
+    // Forgets every vehicle, for a new city; keeps the columns
+    public void clear() {
+        Arrays.fill(visible, 0, size, false);
+        Arrays.fill(trailSize, 0, size, 0);
+        size = 0;
+    }
+
+    // Vehicles stop being animated; each one snaps into place when it is visible again
+    public void hideAll() {
+        Arrays.fill(visible, 0, size, false);
+    }
+
+    // Moves every vehicle on a visible road towards its position in the frame; the rest are hidden.
+    // Visible roads are those in the given rows and columns of grid cells.
+    public void update(CityFrame frame, RoadGeometry geometry, double elapsedSeconds, double speed,
+                       int firstRow, int lastRow, int firstColumn, int lastColumn) {
+        int count = frame.vehicleCount;
+        if (x.length < count) {
+            grow(Math.max(count, x.length * 2));
+        }
+        size = Math.max(size, count);
+
+        double easing = EASING * speed * elapsedSeconds;
+        int gridSize = geometry.gridSize;
+        for (int slot = 0; slot < count; slot++) {
+            int road = frame.vehicleRoad[slot];
+            int cell = road / 2; // roads are created R, C per cell in row-major order
+            int row = cell / gridSize;
+            int column = cell % gridSize;
+            if (road < 0 || row < firstRow || row > lastRow || column < firstColumn || column > lastColumn) {
+                visible[slot] = false;
+                continue;
+            }
+
+            double progress = frame.vehicleProgress[slot];
+            targetX[slot] = geometry.pointX(road, progress);
+            targetY[slot] = geometry.pointY(road, progress);
+            if (!visible[slot]) {
+                // Came into view: jump to the target instead of gliding in from a stale position
+                x[slot] = targetX[slot];
+                y[slot] = targetY[slot];
+                trailSize[slot] = 0;
+                visible[slot] = true;
+            }
+
+            // Smooth movement with easing
+            x[slot] += (targetX[slot] - x[slot]) * easing;
+            y[slot] += (targetY[slot] - y[slot]) * easing;
+            addTrailPoint(slot, x[slot], y[slot]);
+        }
+    }
+
+    // Keeps the last TRAIL_LENGTH points, overwriting the oldest
+    private void addTrailPoint(int slot, double pointX, double pointY) {
+        int base = slot * TRAIL_LENGTH;
+        int points = trailSize[slot];
+        int index;
+        if (points < TRAIL_LENGTH) {
+            index = (trailStart[slot] + points) % TRAIL_LENGTH;
+            trailSize[slot] = points + 1;
+        } else {
+            index = trailStart[slot];
+            trailStart[slot] = (index + 1) % TRAIL_LENGTH;
+        }
+        trailX[base + index] = pointX;
+        trailY[base + index] = pointY;
+    }
+
+    public int getTrailSize(int slot) {
+        return trailSize[slot];
+    }
+
+    // Trail point i of a slot, 0 being the oldest
+    public double getTrailX(int slot, int i) {
+        return trailX[slot * TRAIL_LENGTH + (trailStart[slot] + i) % TRAIL_LENGTH];
+    }
+
+    public double getTrailY(int slot, int i) {
+        return trailY[slot * TRAIL_LENGTH + (trailStart[slot] + i) % TRAIL_LENGTH];
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        targetX = Arrays.copyOf(targetX, capacity);
+        targetY = Arrays.copyOf(targetY, capacity);
+        visible = Arrays.copyOf(visible, capacity);
+        trailX = Arrays.copyOf(trailX, capacity * TRAIL_LENGTH);
+        trailY = Arrays.copyOf(trailY, capacity * TRAIL_LENGTH);
+        trailStart = Arrays.copyOf(trailStart, capacity);
+        trailSize = Arrays.copyOf(trailSize, capacity);
+    }
+}
@@ -0,0 +1,260 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+
+// Columnar state of every vehicle in a CityMap, indexed by an int slot. Vehicle objects are thin
+// handles onto their slot; update loops and the GUI read the primitive columns directly.
+public class VehicleStore {
+    // Stepped-mode phases kept in the phase column
+    static final byte PHASE_NOT_STARTED = 0;
+    static final byte PHASE_WAIT_LIGHT = 1;
+    static final byte PHASE_WAIT_INTERSECTION = 2;
+    static final byte PHASE_MOVING = 3;
+    static final byte PHASE_BACKOFF = 4;
+    static final byte PHASE_DONE = 5;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final VarHandle FLAGS = MethodHandles.arrayElementVarHandle(boolean[].class);
+    private static final VarHandle WAITS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final Vehicle.VehicleType[] TYPES = Vehicle.VehicleType.values();
+
+    private final List<Road> roads;
+    private final List<TrafficLight> lights;
+    private final List<Intersection> intersections;
+    private final SimulationClock clock;
+    final SimulationMetrics metrics; // where the vehicles record their waits
+    private int size = 0;
+
+    // Per-vehicle columns
+    byte[] type;
+    byte[] phase;
+    boolean[] active;
+    boolean[] finished;
+    double[] speed;
+    double[] progress;
+    int[] position;
+    int[] roadIndex;
+    int[] intersectionIndex; // intersection the vehicle is crossing, -1 when none
+    int[] routeIndex;
+    int[] retryCount;
+    long[] totalWaitTime;
+    long[] countedWait; // part of totalWaitTime in the city-wide active total, -1 while inactive
+    long[] waitStartTime;
+    long[] phaseDeadline;
+    long[] moveStartTime;
+    long[] moveDuration;
+    int[] routeStart;
+    int[] routeLength;
+
+    // Route legs of all vehicles back to back: road, light and intersection index per leg
+    private int[] routeRoads = new int[INITIAL_CAPACITY * 3];
+    private int[] routeLights = new int[INITIAL_CAPACITY * 3];
+    private int[] routeIntersections = new int[INITIAL_CAPACITY * 3];
+    private int legCount = 0;
+
+    public VehicleStore(List<Road> roads, List<TrafficLight> lights, List<Intersection> intersections,
+                        SimulationClock clock, SimulationMetrics metrics) {
+        this.roads = roads;
+        this.lights = lights;
+        this.intersections = intersections;
+        this.clock = clock;
+        this.metrics = metrics;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    // Adds a vehicle and returns its slot
+    public int add(Vehicle.VehicleType vehicleType, double vehicleSpeed, List<Road> route,
+                   List<TrafficLight> routeLightList, List<Intersection> routeIntersectionList) {
+        int legs = route.size();
+        int[] roadIndices = new int[legs];
+        int[] lightIndices = new int[legs];
+        int[] intersectionIndices = new int[legs];
+        for (int leg = 0; leg < legs; leg++) {
+            roadIndices[leg] = route.get(leg).getIndex();
+            lightIndices[leg] = routeLightList.get(leg).getIndex();
+            intersectionIndices[leg] = routeIntersectionList.get(leg).getIndex();
+        }
+        return add(vehicleType, vehicleSpeed, roadIndices, lightIndices, intersectionIndices);
+    }
+
+    // Same with the route given as road, light and intersection indices
+    public int add(Vehicle.VehicleType vehicleType, double vehicleSpeed, int[] roadIndices, int[] lightIndices,
+                   int[] intersectionIndices) {
+        if (size == type.length) {
+            allocate(type.length * 2);
+        }
+        int legs = roadIndices.length;
+        if (legCount + legs > routeRoads.length) {
+            int capacity = Math.max(routeRoads.length * 2, legCount + legs);
+            routeRoads = Arrays.copyOf(routeRoads, capacity);
+            routeLights = Arrays.copyOf(routeLights, capacity);
+            routeIntersections = Arrays.copyOf(routeIntersections, capacity);
+        }
+        System.arraycopy(roadIndices, 0, routeRoads, legCount, legs);
+        System.arraycopy(lightIndices, 0, routeLights, legCount, legs);
+        System.arraycopy(intersectionIndices, 0, routeIntersections, legCount, legs);
+
+        int slot = size++;
+        type[slot] = (byte) vehicleType.ordinal();
+        speed[slot] = vehicleSpeed;
+        active[slot] = true;
+        countedWait[slot] = 0;
+        metrics.vehicleAdded(vehicleType.ordinal());
+        roadIndex[slot] = legs > 0 ? routeRoads[legCount] : -1;
+        intersectionIndex[slot] = -1;
+        routeStart[slot] = legCount;
+        routeLength[slot] = legs;
+        legCount += legs;
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        type = type == null ? new byte[capacity] : Arrays.copyOf(type, capacity);
+        phase = phase == null ? new byte[capacity] : Arrays.copyOf(phase, capacity);
+        active = active == null ? new boolean[capacity] : Arrays.copyOf(active, capacity);
+        finished = finished == null ? new boolean[capacity] : Arrays.copyOf(finished, capacity);
+        speed = speed == null ? new double[capacity] : Arrays.copyOf(speed, capacity);
+        progress = progress == null ? new double[capacity] : Arrays.copyOf(progress, capacity);
+        position = position == null ? new int[capacity] : Arrays.copyOf(position, capacity);
+        roadIndex = roadIndex == null ? new int[capacity] : Arrays.copyOf(roadIndex, capacity);
+        intersectionIndex = intersectionIndex == null ? new int[capacity] : Arrays.copyOf(intersectionIndex, capacity);
+        routeIndex = routeIndex == null ? new int[capacity] : Arrays.copyOf(routeIndex, capacity);
+        retryCount = retryCount == null ? new int[capacity] : Arrays.copyOf(retryCount, capacity);
+        totalWaitTime = totalWaitTime == null ? new long[capacity] : Arrays.copyOf(totalWaitTime, capacity);
+        countedWait = countedWait == null ? new long[capacity] : Arrays.copyOf(countedWait, capacity);
+        waitStartTime = waitStartTime == null ? new long[capacity] : Arrays.copyOf(waitStartTime, capacity);
+        phaseDeadline = phaseDeadline == null ? new long[capacity] : Arrays.copyOf(phaseDeadline, capacity);
+        moveStartTime = moveStartTime == null ? new long[capacity] : Arrays.copyOf(moveStartTime, capacity);
+        moveDuration = moveDuration == null ? new long[capacity] : Arrays.copyOf(moveDuration, capacity);
+        routeStart = routeStart == null ? new int[capacity] : Arrays.copyOf(routeStart, capacity);
+        routeLength = routeLength == null ? new int[capacity] : Arrays.copyOf(routeLength, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int routeRoadIndex(int slot, int leg) {
+        return routeRoads[routeStart[slot] + leg];
+    }
+
+    public int routeLightIndex(int slot, int leg) {
+        return routeLights[routeStart[slot] + leg];
+    }
+
+    public int routeIntersectionIndex(int slot, int leg) {
+        return routeIntersections[routeStart[slot] + leg];
+    }
+
+    public Road routeRoad(int slot, int leg) {
+        return roads.get(routeRoads[routeStart[slot] + leg]);
+    }
+
+    public TrafficLight routeLight(int slot, int leg) {
+        return lights.get(routeLights[routeStart[slot] + leg]);
+    }
+
+    public Intersection routeIntersection(int slot, int leg) {
+        return intersections.get(routeIntersections[routeStart[slot] + leg]);
+    }
+
+    public int getRouteLength(int slot) {
+        return routeLength[slot];
+    }
+
+    public double getProgress(int slot) {
+        if (phase[slot] == PHASE_MOVING) {
+            // Stepped modes: derive from the clock so progress stays smooth between steps
+            long duration = Math.max(1, moveDuration[slot]);
+            return Math.min(1.0, (clock.currentTimeMillis() - moveStartTime[slot]) / (double) duration);
+        }
+        return progress[slot];
+    }
+
+    // Index into CityMap.getRoads(), or -1 before the vehicle has a road
+    public int getRoadIndex(int slot) {
+        return roadIndex[slot];
+    }
+
+    // Road of the route leg the vehicle is on or about to start, or -1 past the end of its route.
+    // Differs from getRoadIndex after a failed leg, when the vehicle is shown on the previous road.
+    public int getLegRoadIndex(int slot) {
+        int leg = routeIndex[slot];
+        return leg < routeLength[slot] ? routeRoads[routeStart[slot] + leg] : -1;
+    }
+
+    // Index into CityMap.getIntersections() between entering an intersection and leaving it, else -1
+    public int getIntersectionIndex(int slot) {
+        return intersectionIndex[slot];
+    }
+
+    public Road getRoad(int slot) {
+        int index = roadIndex[slot];
+        return index >= 0 ? roads.get(index) : null;
+    }
+
+    public Vehicle.VehicleType getType(int slot) {
+        return TYPES[type[slot]];
+    }
+
+    public int getTypeOrdinal(int slot) {
+        return type[slot];
+    }
+
+    public double getSpeed(int slot) {
+        return speed[slot];
+    }
+
+    public int getPosition(int slot) {
+        return position[slot];
+    }
+
+    public long getTotalWaitTime(int slot) {
+        return totalWaitTime[slot];
+    }
+
+    // Wait accounting goes through here so the city-wide average keeps up. Only the vehicle's own
+    // thread adds, but stopVehicle may deactivate the slot from another one meanwhile; the add
+    // goes into countedWait by CAS, so the deactivation takes back exactly what was counted.
+    void addWaitTime(int slot, long millis) {
+        totalWaitTime[slot] += millis;
+        long counted;
+        do {
+            counted = (long) WAITS.getVolatile(countedWait, slot);
+            if (counted < 0) {
+                return;
+            }
+        } while (!WAITS.compareAndSet(countedWait, slot, counted, counted + millis));
+        metrics.activeWaitAdded(millis);
+    }
+
+    // Flags are written by the vehicle's own thread and read by the GUI and runners.
+    // active is volatile (not just acquire/release) because stopVehicle pairs it with a wake-up check.
+    public boolean isActive(int slot) {
+        return (boolean) FLAGS.getVolatile(active, slot);
+    }
+
+    // Deactivating may come from any thread; activating only from the vehicle's own thread or
+    // before it runs, while its wait time cannot change
+    void setActive(int slot, boolean value) {
+        if ((boolean) FLAGS.getAndSet(active, slot, value) == value) {
+            return;
+        }
+        if (value) {
+            long wait = totalWaitTime[slot];
+            WAITS.setVolatile(countedWait, slot, wait);
+            metrics.vehicleActiveChanged(type[slot], true, wait);
+        } else {
+            metrics.vehicleActiveChanged(type[slot], false, (long) WAITS.getAndSet(countedWait, slot, -1L));
+        }
+    }
+
+    public boolean isFinished(int slot) {
+        return (boolean) FLAGS.getAcquire(finished, slot);
+    }
+
+    void setFinished(int slot) {
+        FLAGS.setRelease(finished, slot, true);
+    }
+}
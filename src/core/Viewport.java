@@ -0,0 +1,91 @@
+// Camera over the map: map pixels are shown on screen at a uniform scale, with the map point
+// (offsetX, offsetY) in the top-left corner. Holds no JavaFX state, only the numbers.
+public class Viewport {
+    static final double MIN_SCALE = 0.01;
+    static final double MAX_SCALE = 4.0;
+
+    private double scale = 1.0;
+    private double offsetX = 0;
+    private double offsetY = 0;
+    private double width;
+    private double height;
+
+    public Viewport(double width, double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // Screen size changed; keeps the map point at the centre of the screen where it was
+    public void setSize(double newWidth, double newHeight) {
+        offsetX += (width - newWidth) / 2 / scale;
+        offsetY += (height - newHeight) / 2 / scale;
+        width = newWidth;
+        height = newHeight;
+    }
+
+    // Shows the whole map, centred
+    public void fit(double mapWidth, double mapHeight) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        scale = clamp(Math.min(width / mapWidth, height / mapHeight));
+        offsetX = mapWidth / 2 - width / 2 / scale;
+        offsetY = mapHeight / 2 - height / 2 / scale;
+    }
+
+    // Zooms by factor while the map point under (screenX, screenY) stays put
+    public void zoomAt(double factor, double screenX, double screenY) {
+        double mapX = toMapX(screenX);
+        double mapY = toMapY(screenY);
+        scale = clamp(scale * factor);
+        offsetX = mapX - screenX / scale;
+        offsetY = mapY - screenY / scale;
+    }
+
+    // Moves the map along with a drag of the given screen pixels
+    public void pan(double screenDeltaX, double screenDeltaY) {
+        offsetX -= screenDeltaX / scale;
+        offsetY -= screenDeltaY / scale;
+    }
+
+    public double toMapX(double screenX) {
+        return offsetX + screenX / scale;
+    }
+
+    public double toMapY(double screenY) {
+        return offsetY + screenY / scale;
+    }
+
+    // Visible map rectangle
+    public double getMinX() {
+        return offsetX;
+    }
+
+    public double getMinY() {
+        return offsetY;
+    }
+
+    public double getMaxX() {
+        return offsetX + width / scale;
+    }
+
+    public double getMaxY() {
+        return offsetY + height / scale;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public double getOffsetX() {
+        return offsetX;
+    }
+
+    public double getOffsetY() {
+        return offsetY;
+    }
+
+    private static double clamp(double value) {
+        return Math.max(MIN_SCALE, Math.min(MAX_SCALE, value));
+    }
+}
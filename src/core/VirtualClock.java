@@ -0,0 +1,23 @@
+// Simulated time that only moves when a SimulationEngine or DiscreteEventSimulation advances it
+public class VirtualClock implements SimulationClock {
+    private volatile long now;
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    public VirtualClock(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    public void advanceTo(long timeMillis) {
+        if (timeMillis > now) {
+            now = timeMillis;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Runs the blocking Vehicle.run()/TrafficLight.run() logic on virtual threads instead of one
+// platform thread each, and samples which carrier threads they get mounted on.
+public class VirtualThreadRunner {
+    private static final long SAMPLE_MILLIS = 200;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final Set<String> carriers = ConcurrentHashMap.newKeySet();
+    private Thread sampler;
+
+    public synchronized void start(List<TrafficLight> lights, List<Vehicle> vehicles) {
+        for (TrafficLight light : lights) {
+            threads.add(Thread.ofVirtual().name("light-" + light.getLightId()).start(light));
+        }
+        for (Vehicle vehicle : vehicles) {
+            threads.add(Thread.ofVirtual().name(vehicle.getVehicleId()).start(vehicle));
+        }
+        if (sampler == null) {
+            sampler = new Thread(this::sampleCarriers, "carrier-sampler");
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+    }
+
+    // Interrupts every thread; the light loops exit on interrupt, vehicles are stopped by CityMap
+    public synchronized void stop() {
+        threads.forEach(Thread::interrupt);
+        threads.clear();
+        if (sampler != null) {
+            sampler.interrupt();
+            sampler = null;
+        }
+    }
+
+    private void sampleCarriers() {
+        while (!Thread.currentThread().isInterrupted()) {
+            recordMountedCarriers();
+            try {
+                Thread.sleep(SAMPLE_MILLIS);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    // Carriers are the default scheduler's ForkJoinPool-N-worker-M threads; one with a virtual
+    // thread mounted has VirtualThread.runContinuation on its stack, which also tells it apart
+    // from the workers of other pools, such as ParallelSimulationEngine's.
+    private void recordMountedCarriers() {
+        for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+            String name = entry.getKey().getName();
+            if (!name.startsWith("ForkJoinPool-") || carriers.contains(name)) {
+                continue;
+            }
+            for (StackTraceElement frame : entry.getValue()) {
+                if (frame.getClassName().equals("java.lang.VirtualThread")) {
+                    carriers.add(name);
+                    break;
+                }
+            }
+        }
+    }
+
+    // Distinct carrier threads caught running a virtual thread in a sample every SAMPLE_MILLIS.
+    // Approximate: a carrier busy only between samples is missed, and virtual threads from
+    // elsewhere in the JVM count too.
+    public int getObservedCarrierCount() {
+        return carriers.size();
+    }
+
+    // Carrier pool size of the default virtual thread scheduler
+    public static int getCarrierParallelism() {
+        String configured = System.getProperty("jdk.virtualThreadScheduler.parallelism");
+        if (configured != null) {
+            try {
+                return Integer.parseInt(configured);
+            } catch (NumberFormatException e) {
+                // fall through to the JDK default
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public synchronized int getThreadCount() {
+        return threads.size();
+    }
+}